@@ -1,7 +1,9 @@
 import java.io.File;
+import StorageManager.SpillFile;
 import StorageManager.StorageManager;
 import StorageManager.Objects.Catalog;
 import StorageManager.Objects.MessagePrinter;
+import StorageManager.Objects.Page;
 import StorageManager.Objects.MessagePrinter.MessageType;
 
 public class Database {
@@ -10,9 +12,20 @@ public class Database {
     private int pageSize;
     private int bufferSize;
     private boolean indexing;
+    private String bufferPolicy;
+    private double dirtyLow;
+    private double dirtyHigh;
+    private String storageMode;
+    private double indexFill;
 
-    public Database(String dbLocation, int pageSize, int bufferSize, boolean indexing) {
+    public Database(String dbLocation, int pageSize, int bufferSize, boolean indexing, String bufferPolicy,
+            double dirtyLow, double dirtyHigh, String storageMode, double indexFill) {
         this.bufferSize = bufferSize;
+        this.bufferPolicy = bufferPolicy;
+        this.dirtyLow = dirtyLow;
+        this.dirtyHigh = dirtyHigh;
+        this.storageMode = storageMode;
+        this.indexFill = indexFill;
         this.pageSize = pageSize;
         this.dbLocation = dbLocation;
         this.indexing = indexing;
@@ -35,9 +48,21 @@ public class Database {
                 System.out.println("\tIgnoring provided pages size, using stored page size");
                 Catalog.createCatalog(dbDirectory.getAbsolutePath(), schemaFile.getAbsolutePath(), -1, bufferSize, true);
             }
-            StorageManager.createStorageManager(bufferSize);
+            StorageManager.createStorageManager(bufferSize, bufferPolicy, storageMode);
+            StorageManager.getStorageManager().setIndexFillFactor(indexFill);
+            StorageManager.getStorageManager().startDirtyPageWriter(dirtyLow, dirtyHigh);
+            SpillFile.deleteLeftovers(dbDirectory.getAbsolutePath());
+            if (this.indexing && !Catalog.getCatalog().isIndexingOn()) {
+                // indexing is turned on for a database made without it, its tables get their indexes now
+                System.out.println("Building indexes...");
+                Catalog.getCatalog().setIndexing(true);
+                for (int tableNumber : Catalog.getCatalog().getSchemas().keySet()) {
+                    StorageManager.getStorageManager().buildIndex(tableNumber);
+                }
+            }
             System.out.println("Page Size: " + Catalog.getCatalog().getPageSize());
-            System.out.println("Buffer Size: " + bufferSize + "\n");
+            System.out.println("Buffer Size: " + bufferSize);
+            System.out.println("Buffer Policy: " + bufferPolicy + "\n");
             if (Catalog.getCatalog().isIndexingOn()) {
                 System.out.println("Indexing: On");
             } else {
@@ -46,15 +71,22 @@ public class Database {
             System.out.println("Database restarted successfully");
         } else {
             System.out.println("Creating new db at " + dbDirectory.getAbsolutePath());
+            if (pageSize > Page.MAX_PAGE_SIZE) {
+                MessagePrinter.printMessage(MessageType.ERROR,
+                        String.format("Page size cannot be larger than %d bytes", Page.MAX_PAGE_SIZE));
+            }
             File tableDirectory = new File(dbDirectory.getAbsolutePath().concat("/tables"));
             File indexDirectory = new File(dbDirectory.getAbsolutePath().concat("/indexing"));
             boolean success = tableDirectory.mkdir() && schemaFile.createNewFile() && indexDirectory.mkdir();
             if (success){
-                StorageManager.createStorageManager(bufferSize);
+                StorageManager.createStorageManager(bufferSize, bufferPolicy, storageMode);
+                StorageManager.getStorageManager().setIndexFillFactor(indexFill);
+                StorageManager.getStorageManager().startDirtyPageWriter(dirtyLow, dirtyHigh);
                 Catalog.createCatalog(dbDirectory.getAbsolutePath(), schemaFile.getAbsolutePath(), pageSize, bufferSize, indexing);
                 System.out.println("New db created successfully");
                 System.out.println("Page Size: " + pageSize);
                 System.out.println("Buffer Size: " + bufferSize);
+                System.out.println("Buffer Policy: " + bufferPolicy);
                 if (this.indexing) {
                     System.out.println("Indexing: On");
                 } else {
@@ -1,14 +1,37 @@
 public class Main {
   public static void main(String[] args) {
-    if (args.length != 4) {
-      System.err.println("java Main <db_loc> <page_size> <buffer_size> <indexing>");
+    if (args.length < 4) {
+      System.err.println("java Main <db_loc> <page_size> <buffer_size> <indexing> [--buffer-policy=clock|2q]"
+          + " [--dirty-low=<ratio>] [--dirty-high=<ratio>] [--storage-mode=channel|mmap] [--index-fill=<ratio>]");
       System.exit(0);
     } else {
       String dbLocation = args[0];
       int pageSize =  Integer.parseInt(args[1]);
       int bufferSize = Integer.parseInt(args[2]);
       boolean indexing = Boolean.parseBoolean(args[3]);
-      Database database = new Database(dbLocation, pageSize, bufferSize, indexing);
+      String bufferPolicy = "clock";
+      double dirtyLow = 0.25;
+      double dirtyHigh = 0.5;
+      String storageMode = "channel";
+      double indexFill = 0.9;
+      for (int i = 4; i < args.length; i++) {
+        if (args[i].startsWith("--buffer-policy=")) {
+          bufferPolicy = args[i].substring("--buffer-policy=".length()).toLowerCase();
+        } else if (args[i].startsWith("--dirty-low=")) {
+          dirtyLow = Double.parseDouble(args[i].substring("--dirty-low=".length()));
+        } else if (args[i].startsWith("--dirty-high=")) {
+          dirtyHigh = Double.parseDouble(args[i].substring("--dirty-high=".length()));
+        } else if (args[i].startsWith("--storage-mode=")) {
+          storageMode = args[i].substring("--storage-mode=".length()).toLowerCase();
+        } else if (args[i].startsWith("--index-fill=")) {
+          indexFill = Double.parseDouble(args[i].substring("--index-fill=".length()));
+        } else {
+          System.err.println("Unknown option " + args[i]);
+          System.exit(0);
+        }
+      }
+      Database database = new Database(dbLocation, pageSize, bufferSize, indexing, bufferPolicy,
+          dirtyLow, dirtyHigh, storageMode, indexFill);
       try {
         database.start();
       } catch (Exception e) {
@@ -135,6 +135,78 @@ public class DDLParser {
         return tokens.get(0).getVal();
     }
 
+    /**
+     * Parses a CREATE INDEX statement, CREATE INDEX name ON table(attribute);
+     *
+     * @param tokens the list of tokens representing the CREATE INDEX statement
+     * @return a hashmap of parsed values with keys: indexName, tableName, attributeName
+     * @throws Exception if an error occurs during parsing
+     */
+    public static HashMap<String, String> parseCreateIndex(ArrayList<Token> tokens) throws Exception {
+        HashMap<String, String> indexVals = new HashMap<>();
+        tokens.remove(0); // remove create token
+        tokens.remove(0); // remove index token
+
+        if (tokens.get(0).getType() != Type.NAME) {
+            MessagePrinter.printMessage(MessageType.ERROR, "Expected index name");
+        }
+        indexVals.put("indexName", tokens.remove(0).getVal());
+
+        if (!tokens.get(0).getVal().equalsIgnoreCase("on")) {
+            MessagePrinter.printMessage(MessageType.ERROR, "Expected 'on' keyword");
+        }
+        tokens.remove(0);
+
+        if (tokens.get(0).getType() != Type.NAME) {
+            MessagePrinter.printMessage(MessageType.ERROR, "Expected table name");
+        }
+        indexVals.put("tableName", tokens.remove(0).getVal());
+
+        if (tokens.get(0).getType() != Type.L_PAREN) {
+            MessagePrinter.printMessage(MessageType.ERROR, "Open parenthesis expected in create index stmt!");
+        }
+        tokens.remove(0);
+
+        if (tokens.get(0).getType() != Type.NAME) {
+            MessagePrinter.printMessage(MessageType.ERROR, "Expected attribute name");
+        }
+        indexVals.put("attributeName", tokens.remove(0).getVal());
+
+        if (tokens.get(0).getType() != Type.R_PAREN) {
+            MessagePrinter.printMessage(MessageType.ERROR, "Expected closing ) after " + indexVals.get("attributeName"));
+        }
+        tokens.remove(0);
+
+        if (tokens.get(0).getType() != Type.SEMICOLON) {
+            MessagePrinter.printMessage(MessageType.ERROR, "Expected a ';'");
+        }
+        tokens.remove(0);
+        return indexVals;
+    }
+
+    /**
+     * Parses a DROP INDEX statement and returns the index name.
+     *
+     * @param tokens the list of tokens representing the DROP INDEX statement
+     * @return the index name
+     * @throws Exception if an error occurs during parsing
+     */
+    public static String parseDropIndex(ArrayList<Token> tokens) throws Exception {
+        tokens.remove(0); // remove drop token
+        tokens.remove(0); // remove index token
+
+        if (tokens.get(0).getType() != Type.NAME) {
+            MessagePrinter.printMessage(MessageType.ERROR, "Expected an index name");
+        }
+        String indexName = tokens.remove(0).getVal();
+
+        if (tokens.get(0).getType() != Type.SEMICOLON) {
+            MessagePrinter.printMessage(MessageType.ERROR, "Expected a ';'");
+        }
+        tokens.remove(0);
+        return indexName;
+    }
+
     /**
      * Parses an ALTER TABLE statement and returns a hashmap of parsed values.
      *
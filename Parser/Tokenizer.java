@@ -123,6 +123,8 @@ public class Tokenizer {
 
     /**
      * Checks if the given value is a keyword.
+     * The index and on of CREATE INDEX and DROP INDEX are not keywords, they are read
+     * by their position in those statements and stay free for table and attribute names.
      *
      * @param value the value to check
      * @return true if the value is a keyword, false otherwise
@@ -21,10 +21,28 @@ public class AttributeNode implements OperandNode {
         this.dataName = name;
     }
 
+    // the index resolved for the last schema, a where tree is evaluated against the same schema for every record
+    private TableSchema resolvedSchema;
+    private List<AttributeSchema> resolvedAttributes;
+    private int resolvedIndex;
+
     @Override
     public Object getValue(TableSchema schema, Record record) throws Exception {
+        return record.getValue(this.getIndex(schema));
+    }
+
+    /**
+     * Finds the index of the attribute this node names
+     * @param schema        The schema that the records abide by
+     * @return              The index of the attribute in the records
+     * @throws Exception
+     */
+    public int getIndex(TableSchema schema) throws Exception {
         List<AttributeSchema> attrs = schema.getAttributes();
-        List<Object> foundVal = new ArrayList<>();
+        if (schema == this.resolvedSchema && attrs == this.resolvedAttributes) {
+            return this.resolvedIndex;
+        }
+        List<Integer> foundIndexes = new ArrayList<>();
 
         for (int i = 0; i < attrs.size(); i++)  {
             String[] spList = attrs.get(i).getAttributeName().split("\\.");
@@ -37,18 +55,19 @@ public class AttributeNode implements OperandNode {
             }
 
             if (potentialMatches.contains(dataName)) {
-                foundVal.add(record.getValues().get(i));
+                foundIndexes.add(i);
             }
         }
 
-        if (foundVal.size() < 1) {
+        if (foundIndexes.size() < 1) {
             MessagePrinter.printMessage(MessageType.ERROR, "Invalid attribute name: " + this.dataName + ".");
-        } else if (foundVal.size() > 1) {
+        } else if (foundIndexes.size() > 1) {
             MessagePrinter.printMessage(MessageType.ERROR, String.format("%s is ambigious", this.dataName));
-        } else {
-            return foundVal.get(0);
         }
-        return null;
+        this.resolvedSchema = schema;
+        this.resolvedAttributes = attrs;
+        this.resolvedIndex = foundIndexes.get(0);
+        return this.resolvedIndex;
 
     }
 
@@ -22,8 +22,24 @@ public class ComparisonOpNode implements OperatorNode {
         this.operator = operator;
     }
 
+    public OperandNode getLeftChild() {
+        return leftChild;
+    }
+
+    public OperandNode getRightChild() {
+        return rigthChild;
+    }
+
+    public String getOperator() {
+        return operator;
+    }
+
     @Override
     public boolean evaluate(TableSchema schema, StorageManager.Objects.Record record) throws Exception {
+        if (this.leftChild instanceof AttributeNode && this.rigthChild instanceof ValueNode) {
+            return this.evaluateAgainstLiteral(schema, record);
+        }
+
         Object right = this.rigthChild.getValue(schema, record);
         Object left = this.leftChild.getValue(schema, record);
 
@@ -65,6 +81,56 @@ public class ComparisonOpNode implements OperatorNode {
 
     }
 
+    /**
+     * Compares an attribute to a literal, the attribute is compared in place
+     * by the record without being boxed
+     * @param schema    The schema that the record abides by
+     * @param record    The record in question
+     * @return          A boolean
+     * @throws Exception
+     */
+    private boolean evaluateAgainstLiteral(TableSchema schema, StorageManager.Objects.Record record) throws Exception {
+        int index = ((AttributeNode) this.leftChild).getIndex(schema);
+        Object right = this.rigthChild.getValue(schema, record);
+
+        if (right == null || record.isNull(index)) {
+            boolean bothNull = right == null && record.isNull(index);
+            if (this.operator.equals("=")) {
+                return bothNull;
+            } else if (this.operator.equals("!=")) {
+                return !bothNull;
+            }
+            return false;
+        }
+
+        switch (record.getType(index)) {
+            case STRING:
+                if (!(right instanceof String)) {
+                    MessagePrinter.printMessage(MessageType.ERROR, "Mismatch data type in where comparison. Expected right side: String, Got: " + right);
+                }
+                break;
+            case INTEGER:
+                if (!(right instanceof Integer)) {
+                    MessagePrinter.printMessage(MessageType.ERROR, "Mismatch data type in where comparison. Expected right side: Integer, Got: " + right);
+                }
+                break;
+            case BOOLEAN:
+                if (!(right instanceof Boolean)) {
+                    MessagePrinter.printMessage(MessageType.ERROR, "Mismatch data type in where comparison. Expected right side: Boolean, Got: " + right);
+                }
+                break;
+            case DOUBLE:
+                if (!(right instanceof Double)) {
+                    MessagePrinter.printMessage(MessageType.ERROR, "Mismatch data type in where comparison. Expected right side: Double, Got: " + right);
+                }
+                break;
+            default:
+                MessagePrinter.printMessage(MessageType.ERROR, "Unsupported datatype.");
+                return false;
+        }
+        return this.compareResult(record.compareTo(right, index));
+    }
+
     /**
      * Takes in two parameters of any type and compares them based on some comparison
      * @param <T>
@@ -74,19 +140,29 @@ public class ComparisonOpNode implements OperatorNode {
      * @throws Exception
      */
     private <T extends Comparable<T>> boolean compareChildren (T left, T right) throws Exception {
+        return this.compareResult(left.compareTo(right));
+    }
+
+    /**
+     * Applies the operator to the result of a compareTo
+     * @param comparison    The result of comparing the left operand to the right one
+     * @return              A boolean
+     * @throws Exception
+     */
+    private boolean compareResult(int comparison) throws Exception {
         switch (this.operator) {
             case "=":
-                return left.equals(right);
+                return comparison == 0;
             case "!=":
-                return !(left.equals(right));
+                return comparison != 0;
             case ">":
-                return left.compareTo(right) > 0;
+                return comparison > 0;
             case "<":
-                return left.compareTo(right) < 0;
+                return comparison < 0;
             case ">=":
-                return left.compareTo(right) >= 0;
+                return comparison >= 0;
             case "<=":
-                return left.compareTo(right) <= 0;
+                return comparison <= 0;
             default:
                 MessagePrinter.printMessage(MessageType.ERROR, "Unsupported comparison operator: " + this.operator + ".");
                 break;
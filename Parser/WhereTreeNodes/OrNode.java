@@ -14,6 +14,14 @@ public class OrNode implements OperatorNode {
         this.rigthChild = right;
     }
 
+    public OperatorNode getLeftChild() {
+        return leftChild;
+    }
+
+    public OperatorNode getRightChild() {
+        return rigthChild;
+    }
+
     @Override
     public boolean evaluate(TableSchema schema, Record record) throws Exception {
         return leftChild.evaluate(schema, record) || rigthChild.evaluate(schema, record);
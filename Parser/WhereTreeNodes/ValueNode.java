@@ -15,6 +15,10 @@ public class ValueNode implements OperandNode {
         this.value = value;
     }
 
+    public Object getValue() {
+        return this.value;
+    }
+
     @Override
     public Object getValue(TableSchema schema, Record record) {
         return this.value;
@@ -20,6 +20,13 @@ public class WhereTree {
     this.empty = true;
   }
 
+  /**
+   * @return the root of the tree, null if the tree is empty
+   */
+  public OperatorNode getRoot() {
+    return this.empty ? null : this.root;
+  }
+
   public boolean evaluate(TableSchema tableSchema, Record record) throws Exception {
     if (!this.empty) {
       return root.evaluate(tableSchema, record);
@@ -0,0 +1,292 @@
+package QueryExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import Parser.Type;
+import Parser.WhereTreeNodes.AndNode;
+import Parser.WhereTreeNodes.AttributeNode;
+import Parser.WhereTreeNodes.ComparisonOpNode;
+import Parser.WhereTreeNodes.OrNode;
+import Parser.WhereTreeNodes.ValueNode;
+import Parser.WhereTreeNodes.WhereTree;
+import Parser.WhereTreeNodes.Interfaces.OperandNode;
+import Parser.WhereTreeNodes.Interfaces.OperatorNode;
+import QueryExecutor.Operators.Operator;
+import QueryExecutor.Operators.ScanOperator;
+import StorageManager.SecondaryIndex;
+import StorageManager.StorageManager;
+import StorageManager.TableSchema;
+import StorageManager.Objects.Catalog;
+import StorageManager.Objects.IndexKey;
+import StorageManager.Objects.Record;
+
+/**
+ * Picks how the records of a single table a where clause may hold for are read.
+ * When the clause requires the primary key or an attribute with a secondary index
+ * to equal a literal or to lie in a range, in the clause itself or in one of the sides
+ * of an and, only the records in that range are read, the primary key winning a tie.
+ * Otherwise every record of the table is read. The caller still evaluates the whole
+ * where clause against the records it gets back.
+ */
+public class AccessPath {
+
+  /**
+   * @param tableSchema The table queried
+   * @param whereTree   The where clause of the query, may be null
+   * @return an operator producing the records the where clause may hold for, ascending by primary key
+   * @throws Exception
+   */
+  public static Operator getOperator(TableSchema tableSchema, WhereTree whereTree) throws Exception {
+    if (whereTree != null && whereTree.getRoot() != null) {
+      List<ComparisonOpNode> comparisons = new ArrayList<>();
+      collectComparisons(whereTree.getRoot(), comparisons);
+
+      Range best = Range.of(tableSchema, tableSchema.getPrimaryIndex(), null, comparisons);
+      for (SecondaryIndex index : Catalog.getCatalog().getIndexes(tableSchema.getTableNumber())) {
+        Range range = Range.of(tableSchema, index.getAttributeIndex(tableSchema), index, comparisons);
+        if (range != null && (best == null || range.rank() > best.rank())) {
+          best = range;
+        }
+      }
+
+      if (best != null) {
+        // the records the index skips are never evaluated, an unknown attribute is reported here instead
+        resolveAttributes(tableSchema, whereTree.getRoot());
+        return new RangeScan(tableSchema, best);
+      }
+    }
+    return new ScanOperator(tableSchema.getTableNumber());
+  }
+
+  /**
+   * Collects the comparisons every record the where clause holds for must pass,
+   * the comparisons under an and but not those under an or
+   */
+  static void collectComparisons(OperatorNode node, List<ComparisonOpNode> comparisons) {
+    if (node instanceof AndNode) {
+      collectComparisons(((AndNode) node).getLeftChild(), comparisons);
+      collectComparisons(((AndNode) node).getRightChild(), comparisons);
+    } else if (node instanceof ComparisonOpNode) {
+      comparisons.add((ComparisonOpNode) node);
+    }
+  }
+
+  /**
+   * Resolves every attribute the where clause names, erroring on one the table does not have
+   */
+  static void resolveAttributes(TableSchema tableSchema, OperatorNode node) throws Exception {
+    if (node instanceof AndNode) {
+      resolveAttributes(tableSchema, ((AndNode) node).getLeftChild());
+      resolveAttributes(tableSchema, ((AndNode) node).getRightChild());
+    } else if (node instanceof OrNode) {
+      resolveAttributes(tableSchema, ((OrNode) node).getLeftChild());
+      resolveAttributes(tableSchema, ((OrNode) node).getRightChild());
+    } else if (node instanceof ComparisonOpNode) {
+      for (OperandNode operand : new OperandNode[] { ((ComparisonOpNode) node).getLeftChild(),
+          ((ComparisonOpNode) node).getRightChild() }) {
+        if (operand instanceof AttributeNode) {
+          ((AttributeNode) operand).getIndex(tableSchema);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the operator that gives the same comparison with its operands swapped
+   */
+  private static String flip(String operator) {
+    switch (operator) {
+      case "<":
+        return ">";
+      case "<=":
+        return ">=";
+      case ">":
+        return "<";
+      case ">=":
+        return "<=";
+      default:
+        return operator;
+    }
+  }
+
+  /**
+   * @return whether a literal has the type of an attribute, a comparison of the two otherwise fails
+   */
+  private static boolean matchesType(Type type, Object value) {
+    switch (type) {
+      case INTEGER:
+        return value instanceof Integer;
+      case DOUBLE:
+        return value instanceof Double;
+      case BOOLEAN:
+        return value instanceof Boolean;
+      case STRING:
+        return value instanceof String;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Produces the records of a range, read through the index when it is opened.
+   * It holds the records in the range, not every record of the table
+   */
+  private static final class RangeScan implements Operator {
+    private final TableSchema tableSchema;
+    private final Range range;
+    private List<Record> records;
+    private int position;
+
+    private RangeScan(TableSchema tableSchema, Range range) {
+      this.tableSchema = tableSchema;
+      this.range = range;
+    }
+
+    @Override
+    public void open() throws Exception {
+      this.records = this.range.read(this.tableSchema);
+      this.position = 0;
+    }
+
+    @Override
+    public Record next() {
+      if (this.position >= this.records.size()) {
+        return null;
+      }
+      return this.records.get(this.position++);
+    }
+
+    @Override
+    public void close() {
+      this.records = null;
+    }
+  }
+
+  /**
+   * The values of an indexed attribute the comparisons on it allow,
+   * a missing bound leaves that side open
+   */
+  private static final class Range {
+    // null for the primary key
+    private final SecondaryIndex index;
+    private Object lower;
+    private boolean lowerInclusive;
+    private Object upper;
+    private boolean upperInclusive;
+
+    private Range(SecondaryIndex index) {
+      this.index = index;
+    }
+
+    /**
+     * @param attributeIndex The index of the indexed attribute in the records of the table
+     * @param index          The secondary index on the attribute, null if it is the primary key
+     * @return the range of an index the comparisons allow, null if none of them is on the indexed attribute
+     */
+    static Range of(TableSchema tableSchema, int attributeIndex, SecondaryIndex index,
+        List<ComparisonOpNode> comparisons) {
+      Type type = tableSchema.getAttributes().get(attributeIndex).getType();
+      Range range = new Range(index);
+      boolean bounded = false;
+
+      for (ComparisonOpNode comparison : comparisons) {
+        OperandNode attribute = comparison.getLeftChild();
+        OperandNode literal = comparison.getRightChild();
+        String operator = comparison.getOperator();
+        if (attribute instanceof ValueNode && literal instanceof AttributeNode) {
+          // 5 < x is x > 5
+          attribute = comparison.getRightChild();
+          literal = comparison.getLeftChild();
+          operator = flip(operator);
+        }
+        if (!(attribute instanceof AttributeNode) || !(literal instanceof ValueNode)) {
+          continue;
+        }
+
+        Object value = ((ValueNode) literal).getValue();
+        if (!matchesType(type, value)) {
+          // no index for null and mismatched literals, the scan deals with them
+          continue;
+        }
+        try {
+          if (((AttributeNode) attribute).getIndex(tableSchema) != attributeIndex) {
+            continue;
+          }
+        } catch (Exception e) {
+          // the scan reports the unknown attribute
+          continue;
+        }
+
+        switch (operator) {
+          case "=":
+            range.raiseLower(value, true);
+            range.lowerUpper(value, true);
+            break;
+          case ">":
+            range.raiseLower(value, false);
+            break;
+          case ">=":
+            range.raiseLower(value, true);
+            break;
+          case "<":
+            range.lowerUpper(value, false);
+            break;
+          case "<=":
+            range.lowerUpper(value, true);
+            break;
+          default:
+            continue;
+        }
+        bounded = true;
+      }
+      return bounded ? range : null;
+    }
+
+    private void raiseLower(Object value, boolean inclusive) {
+      int comparison = lower == null ? 1 : IndexKey.compareValues(value, lower);
+      if (comparison > 0) {
+        lower = value;
+        lowerInclusive = inclusive;
+      } else if (comparison == 0) {
+        lowerInclusive &= inclusive;
+      }
+    }
+
+    private void lowerUpper(Object value, boolean inclusive) {
+      int comparison = upper == null ? -1 : IndexKey.compareValues(value, upper);
+      if (comparison < 0) {
+        upper = value;
+        upperInclusive = inclusive;
+      } else if (comparison == 0) {
+        upperInclusive &= inclusive;
+      }
+    }
+
+    /**
+     * @return the records with a value in the range, ascending by primary key
+     */
+    List<Record> read(TableSchema tableSchema) throws Exception {
+      StorageManager storageManager = StorageManager.getStorageManager();
+      if (index == null) {
+        return storageManager.getRecordsInRange(tableSchema.getTableNumber(), lower, lowerInclusive, upper,
+            upperInclusive);
+      }
+      List<Object> primaryKeys = storageManager.getIndexedPrimaryKeys(index, lower, lowerInclusive, upper,
+          upperInclusive);
+      primaryKeys.sort(null);
+      return storageManager.getRecords(tableSchema.getTableNumber(), primaryKeys);
+    }
+
+    /**
+     * @return how selective the range is likely to be, a single value over a closed range over an open one
+     */
+    int rank() {
+      if (lower == null || upper == null) {
+        return 1;
+      }
+      boolean single = lowerInclusive && upperInclusive && IndexKey.compareValues(lower, upper) == 0;
+      return single ? 3 : 2;
+    }
+  }
+}
@@ -17,6 +17,8 @@ public class DDLQueryExecutor implements QueryExecutorInterface{
 
   private String isDeflt;
 
+  private String tableName; // index use
+
 
   public DDLQueryExecutor(String name, String action, String defaultValue, String attributeName, String dataType,
       String attributeAction, String isDeflt) {
@@ -39,6 +41,13 @@ public class DDLQueryExecutor implements QueryExecutorInterface{
     this.tableSchema = tableSchema;
   }
 
+  public DDLQueryExecutor(String name, String action, String tableName, String attributeName) {
+    this.name = name;
+    this.action = action;
+    this.tableName = tableName;
+    this.attributeName = attributeName;
+  }
+
 
 
 
@@ -62,6 +71,15 @@ public class DDLQueryExecutor implements QueryExecutorInterface{
         catalog.alterTableSchema(tableSchema.getTableNumber(), this.attributeAction,this.attributeName,this.dataType,
                 this.defaultValue,this.isDeflt,false,false,false);
         MessagePrinter.printMessage(MessageType.SUCCESS, null);
+        break;
+      case "createIndex":
+        catalog.createIndex(this.name, this.tableName, this.attributeName);
+        MessagePrinter.printMessage(MessageType.SUCCESS, null);
+        break;
+      case "dropIndex":
+        catalog.dropIndex(this.name);
+        MessagePrinter.printMessage(MessageType.SUCCESS, null);
+        break;
       default:
         break;
     }
@@ -5,6 +5,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 import Parser.Delete;
+import QueryExecutor.Operators.FilterOperator;
+import QueryExecutor.Operators.Operator;
 import StorageManager.StorageManager;
 import StorageManager.TableSchema;
 import StorageManager.Objects.Catalog;
@@ -42,12 +44,17 @@ public class DeleteQueryExecutor implements QueryExecutorInterface{
     tableSchema = catalog.getSchema(this.delete.getTableName());
 
     if (this.delete.getWhereTree() != null) {
-      List<Record> records = StorageManager.getStorageManager().getAllRecords(tableSchema.getTableNumber());
+      // only the keys are held, the records are deleted once the scan is done with the table
+      Operator records = new FilterOperator(AccessPath.getOperator(tableSchema, this.delete.getWhereTree()),
+          this.delete.getWhereTree(), tableSchema);
       int primaryKeyIndex = tableSchema.getPrimaryIndex();
-      for (Record record : records) {
-        if (this.delete.getWhereTree().evaluate(tableSchema, record)) {
-          this.primaryKeys.add(record.getValues().get(primaryKeyIndex));
+      records.open();
+      try {
+        for (Record record = records.next(); record != null; record = records.next()) {
+          this.primaryKeys.add(record.getValue(primaryKeyIndex));
         }
+      } finally {
+        records.close();
       }
     }
   }
@@ -6,7 +6,9 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import Parser.Insert;
+import StorageManager.SecondaryIndex;
 import StorageManager.StorageManager;
+import StorageManager.TableCursor;
 import StorageManager.TableSchema;
 import StorageManager.Objects.AttributeSchema;
 import StorageManager.Objects.Catalog;
@@ -42,28 +44,16 @@ public class InsertQueryExcutor implements QueryExecutorInterface {
 
     // determine index of the primary key
     int primaryKeyIndex = tableSchema.getPrimaryIndex();
-    List<AttributeSchema> attrs = tableSchema.getAttributes();
 
     // check for unique primary key
     if (StorageManager.getStorageManager().getRecord(tableSchema.getTableNumber(),
-        record.getValues().get(primaryKeyIndex)) != null) {
+        record.getValue(primaryKeyIndex)) != null) {
       MessagePrinter.printMessage(MessageType.ERROR, String.format("row (%s): Duplicate %s for row (%s)",
           printRow(record), "primary key", printRow(record)));
     }
 
     // check unique constraints
-
-    List<Integer> uniqueAttributes = new ArrayList<>();
-    for (int i = 0; i < attrs.size(); i++) {
-      if (attrs.get(i).isUnique() && !attrs.get(i).isPrimaryKey()) {
-        uniqueAttributes.add(i);
-      }
-    }
-
-    // confirm unique
-    if (uniqueAttributes.size() > 0) {
-      this.checkUniqueContraints(uniqueAttributes, tableSchema.getTableNumber(), primaryKeyIndex, record);
-    }
+    this.checkUniqueContraints(tableSchema, record);
 
     return tableSchema.getTableNumber();
 
@@ -158,16 +148,48 @@ public class InsertQueryExcutor implements QueryExecutorInterface {
     }
   }
 
-  private void checkUniqueContraints(List<Integer> uniqueAttributeIndexes, int tableNumber, int primaryKeyIndex,
-      Record newRecord) throws Exception {
-    List<Record> records = StorageManager.getStorageManager().getAllRecords(tableNumber);
-    for (Record record : records) {
-      for (Integer attributeIndex : uniqueAttributeIndexes) {
-        if (newRecord.compareTo(record, attributeIndex) == 0) {
+  /**
+   * Probes the unique index of each unique attribute for the value of the new record,
+   * a null value is never a duplicate. An attribute too large to have an index is
+   * checked against every record of the table instead
+   */
+  private void checkUniqueContraints(TableSchema tableSchema, Record newRecord) throws Exception {
+    StorageManager storageManager = StorageManager.getStorageManager();
+    List<Integer> unindexed = new ArrayList<>();
+    for (int i = 0; i < tableSchema.getAttributes().size(); i++) {
+      AttributeSchema attribute = tableSchema.getAttributes().get(i);
+      if (attribute.isUnique() && !attribute.isPrimaryKey() && newRecord.getValue(i) != null) {
+        unindexed.add(i);
+      }
+    }
+
+    for (SecondaryIndex index : Catalog.getCatalog().getIndexes(tableSchema.getTableNumber())) {
+      int attributeIndex = index.getAttributeIndex(tableSchema);
+      if (!index.isUnique() || !unindexed.remove((Integer) attributeIndex)) {
+        continue;
+      }
+      Object primaryKey = storageManager.findIndexedPrimaryKey(index, newRecord.getValue(attributeIndex));
+      if (primaryKey != null) {
+        Record record = storageManager.getRecord(tableSchema.getTableNumber(), primaryKey);
+        MessagePrinter.printMessage(MessageType.ERROR,
+            String.format("row (%s): Duplicate %s for row (%s)", printRow(record), "value", printRow(record)));
+      }
+    }
+
+    if (unindexed.isEmpty()) {
+      return;
+    }
+    TableCursor cursor = storageManager.openTableCursor(tableSchema.getTableNumber());
+    while (cursor.hasRecord()) {
+      Record record = cursor.getRecord();
+      for (int attributeIndex : unindexed) {
+        Object value = newRecord.getValue(attributeIndex);
+        if (!record.isNull(attributeIndex) && record.compareTo(value, attributeIndex) == 0) {
           MessagePrinter.printMessage(MessageType.ERROR,
               String.format("row (%s): Duplicate %s for row (%s)", printRow(record), "value", printRow(record)));
         }
       }
+      cursor.next();
     }
   }
 
@@ -0,0 +1,45 @@
+package QueryExecutor.Operators;
+
+import Parser.WhereTreeNodes.WhereTree;
+import StorageManager.TableSchema;
+import StorageManager.Objects.Record;
+
+/**
+ * Produces the records of its input a where clause holds for
+ */
+public class FilterOperator implements Operator {
+  private Operator child;
+  private WhereTree whereTree;
+  private TableSchema schema;
+
+  /**
+   * @param child     The input
+   * @param whereTree The where clause
+   * @param schema    The schema the records of the input abide by
+   */
+  public FilterOperator(Operator child, WhereTree whereTree, TableSchema schema) {
+    this.child = child;
+    this.whereTree = whereTree;
+    this.schema = schema;
+  }
+
+  @Override
+  public void open() throws Exception {
+    this.child.open();
+  }
+
+  @Override
+  public Record next() throws Exception {
+    for (Record record = this.child.next(); record != null; record = this.child.next()) {
+      if (this.whereTree.evaluate(this.schema, record)) {
+        return record;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public void close() throws Exception {
+    this.child.close();
+  }
+}
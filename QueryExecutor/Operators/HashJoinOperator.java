@@ -0,0 +1,369 @@
+package QueryExecutor.Operators;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import StorageManager.SpillFile;
+import StorageManager.TableSchema;
+import StorageManager.Objects.Catalog;
+import StorageManager.Objects.Record;
+
+/**
+ * Produces the records of two inputs whose join attributes are equal, each left
+ * record followed by a right one, the same records a cartesian product filtered
+ * on the equalities would give. The smaller input is read into a hash table on
+ * its join attributes when the operator is opened, then the other input is read
+ * a record at a time and looked up in it. Null equals null, as it does in a where clause.
+ *
+ * The hash table holds as many bytes of records as the buffer holds pages. Once
+ * the built input outgrows it both inputs are split into partitions by the hash of
+ * their join attributes and spilled, then each pair of partitions is joined in turn,
+ * records that match always landing in the same pair. A built partition that is
+ * still too large, its join attributes hashing alike, is split again with another
+ * hash. One that no split shrinks, most of it one value, is joined a part at a time,
+ * its probing partition read once for each part.
+ */
+public class HashJoinOperator implements Operator {
+  // how many times a partition is split again before it is joined a part at a time
+  private static final int MAX_DEPTH = 3;
+  private static final int MAX_PARTITIONS = 32;
+
+  private Operator left;
+  private Operator right;
+  private List<Integer> leftKeys;
+  private List<Integer> rightKeys;
+  private TableSchema leftSchema;
+  private TableSchema rightSchema;
+  private boolean buildLeft;
+
+  private long memoryLimit;
+  private int numPartitions;
+  private Map<List<Object>, List<Record>> table;
+  // the input being probed, the other input or the probing partition of the pair being joined
+  private Operator probe;
+  // the record of the probing input being joined and the built records it matches
+  private Record probeRecord;
+  private List<Record> matches;
+  private int position;
+
+  // the pairs of partitions left to join, the one being joined and what of its built partition is left to read
+  private Deque<Partition> partitions;
+  private Partition partition;
+  private SpillFile remaining;
+
+  /**
+   * @param left        The left input
+   * @param right       The right input
+   * @param leftKeys    The indexes of the join attributes in the left records
+   * @param rightKeys   The indexes of the join attributes in the right records, in the same order
+   * @param leftSchema  The attributes of the left records, to spill them
+   * @param rightSchema The attributes of the right records, to spill them
+   * @param buildLeft   Whether the left input is the one held in the hash table, it should be the smaller
+   */
+  public HashJoinOperator(Operator left, Operator right, List<Integer> leftKeys, List<Integer> rightKeys,
+      TableSchema leftSchema, TableSchema rightSchema, boolean buildLeft) {
+    this.left = left;
+    this.right = right;
+    this.leftKeys = leftKeys;
+    this.rightKeys = rightKeys;
+    this.leftSchema = leftSchema;
+    this.rightSchema = rightSchema;
+    this.buildLeft = buildLeft;
+  }
+
+  @Override
+  public void open() throws Exception {
+    // reopening starts over, the partitions of the last run are no use
+    this.deleteSpills();
+    Catalog catalog = Catalog.getCatalog();
+    this.memoryLimit = (long) catalog.getBufferSize() * catalog.getPageSize();
+    // a partition being written holds a page
+    this.numPartitions = Math.max(2, Math.min(MAX_PARTITIONS, catalog.getBufferSize() - 1));
+    this.partitions = new ArrayDeque<>();
+    this.probeRecord = null;
+    this.matches = Collections.emptyList();
+    this.position = 0;
+
+    Operator build = this.buildLeft ? this.left : this.right;
+    Operator probe = this.buildLeft ? this.right : this.left;
+
+    SpillFile[] builtPartitions = null;
+    this.table = new HashMap<>();
+    long tableSize = 0;
+    build.open();
+    try {
+      for (Record record = build.next(); record != null; record = build.next()) {
+        if (builtPartitions != null) {
+          builtPartitions[this.partitionOf(record, this.getBuildKeys(), 0)].add(record);
+          continue;
+        }
+        this.table.computeIfAbsent(getKey(record, this.getBuildKeys()), key -> new ArrayList<>()).add(record);
+        tableSize += record.computeSize();
+        if (tableSize > this.memoryLimit) {
+          builtPartitions = this.spillTable();
+        }
+      }
+    } finally {
+      build.close();
+    }
+
+    if (builtPartitions == null) {
+      this.probe = probe;
+      this.probe.open();
+      return;
+    }
+
+    SpillFile[] probePartitions = this.partition(probe, this.getProbeKeys(), this.getProbeSchema(), 0);
+    for (int i = 0; i < this.numPartitions; i++) {
+      this.partitions.push(new Partition(builtPartitions[i], probePartitions[i], 0));
+    }
+    this.probe = null;
+  }
+
+  @Override
+  public Record next() throws Exception {
+    while (this.position >= this.matches.size()) {
+      this.probeRecord = this.probe == null ? null : this.probe.next();
+      if (this.probeRecord == null) {
+        if (!this.nextPart()) {
+          return null;
+        }
+        continue;
+      }
+      this.matches = this.table.getOrDefault(getKey(this.probeRecord, this.getProbeKeys()),
+          Collections.emptyList());
+      this.position = 0;
+    }
+
+    Record match = this.matches.get(this.position++);
+    return this.buildLeft ? new Record(match, this.probeRecord) : new Record(this.probeRecord, match);
+  }
+
+  @Override
+  public void close() throws Exception {
+    this.table = null;
+    this.probeRecord = null;
+    this.matches = Collections.emptyList();
+    this.probe = null;
+    this.deleteSpills();
+    this.left.close();
+    this.right.close();
+  }
+
+  private void deleteSpills() throws Exception {
+    this.remaining = null;
+    if (this.partition != null) {
+      this.partition.delete();
+      this.partition = null;
+    }
+    if (this.partitions != null) {
+      while (!this.partitions.isEmpty()) {
+        this.partitions.pop().delete();
+      }
+    }
+  }
+
+  /**
+   * Moves on to the next part of the built partition being joined, or to the next pair of partitions
+   *
+   * @return false once every pair has been joined
+   */
+  private boolean nextPart() throws Exception {
+    if (this.remaining != null) {
+      this.fillTable();
+      if (!this.table.isEmpty()) {
+        this.probe.open();
+        return true;
+      }
+    }
+    if (this.partition != null) {
+      this.partition.delete();
+      this.partition = null;
+    }
+    this.probe = null;
+
+    while (this.partitions != null && !this.partitions.isEmpty()) {
+      Partition next = this.partitions.pop();
+      if (next.build.getSize() == 0 || next.probe.getSize() == 0) {
+        // nothing in the pair matches
+        next.delete();
+        continue;
+      }
+      if (next.build.getSize() > this.memoryLimit && next.depth < MAX_DEPTH) {
+        // split it again, with a hash that spreads its records differently
+        SpillFile[] built = this.partition(new SpillScan(next.build), this.getBuildKeys(), this.getBuildSchema(),
+            next.depth + 1);
+        SpillFile[] probed = this.partition(new SpillScan(next.probe), this.getProbeKeys(), this.getProbeSchema(),
+            next.depth + 1);
+        next.delete();
+        for (int i = 0; i < this.numPartitions; i++) {
+          this.partitions.push(new Partition(built[i], probed[i], next.depth + 1));
+        }
+        continue;
+      }
+
+      this.partition = next;
+      this.remaining = next.build;
+      this.remaining.rewind();
+      this.fillTable();
+      this.probe = new SpillScan(next.probe);
+      this.probe.open();
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Reads the built partition being joined into the hash table until it is full or the partition is read
+   */
+  private void fillTable() throws Exception {
+    this.table = new HashMap<>();
+    long tableSize = 0;
+    while (tableSize <= this.memoryLimit) {
+      Record record = this.remaining.next();
+      if (record == null) {
+        this.remaining = null;
+        return;
+      }
+      this.table.computeIfAbsent(getKey(record, this.getBuildKeys()), key -> new ArrayList<>()).add(record);
+      tableSize += record.computeSize();
+    }
+  }
+
+  /**
+   * Moves the records of the hash table into partitions, the built input having outgrown it
+   *
+   * @return the partitions of the built input
+   */
+  private SpillFile[] spillTable() throws Exception {
+    SpillFile[] spilled = this.createPartitions(this.getBuildSchema());
+    for (List<Record> records : this.table.values()) {
+      for (Record record : records) {
+        spilled[this.partitionOf(record, this.getBuildKeys(), 0)].add(record);
+      }
+    }
+    this.table = new HashMap<>();
+    return spilled;
+  }
+
+  /**
+   * Splits an input into partitions by the hash of its join attributes
+   *
+   * @param depth How many times the records have been split before, each time hashes them differently
+   */
+  private SpillFile[] partition(Operator input, List<Integer> keys, TableSchema schema, int depth)
+      throws Exception {
+    SpillFile[] spilled = this.createPartitions(schema);
+    input.open();
+    try {
+      for (Record record = input.next(); record != null; record = input.next()) {
+        spilled[this.partitionOf(record, keys, depth)].add(record);
+      }
+    } finally {
+      input.close();
+    }
+    return spilled;
+  }
+
+  private SpillFile[] createPartitions(TableSchema schema) throws Exception {
+    SpillFile[] spilled = new SpillFile[this.numPartitions];
+    try {
+      for (int i = 0; i < this.numPartitions; i++) {
+        spilled[i] = new SpillFile(schema);
+      }
+    } catch (Exception e) {
+      for (SpillFile file : spilled) {
+        if (file != null) {
+          file.delete();
+        }
+      }
+      throw e;
+    }
+    return spilled;
+  }
+
+  private int partitionOf(Record record, List<Integer> keys, int depth) {
+    // the hash of the key mixed with a different seed at each depth, the records of a partition spread over new ones
+    int hash = getKey(record, keys).hashCode() + depth * 0x9E3779B9;
+    hash ^= hash >>> 16;
+    hash *= 0x85EBCA6B;
+    hash ^= hash >>> 13;
+    hash *= 0xC2B2AE35;
+    hash ^= hash >>> 16;
+    return Math.floorMod(hash, this.numPartitions);
+  }
+
+  private List<Integer> getBuildKeys() {
+    return this.buildLeft ? this.leftKeys : this.rightKeys;
+  }
+
+  private List<Integer> getProbeKeys() {
+    return this.buildLeft ? this.rightKeys : this.leftKeys;
+  }
+
+  private TableSchema getBuildSchema() {
+    return this.buildLeft ? this.leftSchema : this.rightSchema;
+  }
+
+  private TableSchema getProbeSchema() {
+    return this.buildLeft ? this.rightSchema : this.leftSchema;
+  }
+
+  private static List<Object> getKey(Record record, List<Integer> keys) {
+    List<Object> key = new ArrayList<>(keys.size());
+    for (int index : keys) {
+      key.add(record.getValue(index));
+    }
+    return key;
+  }
+
+  /**
+   * The partitions of the two inputs for the same hashes
+   */
+  private static final class Partition {
+    private final SpillFile build;
+    private final SpillFile probe;
+    private final int depth;
+
+    private Partition(SpillFile build, SpillFile probe, int depth) {
+      this.build = build;
+      this.probe = probe;
+      this.depth = depth;
+    }
+
+    private void delete() throws Exception {
+      this.build.delete();
+      this.probe.delete();
+    }
+  }
+
+  /**
+   * Produces the records of a spilled partition
+   */
+  private static final class SpillScan implements Operator {
+    private final SpillFile file;
+
+    private SpillScan(SpillFile file) {
+      this.file = file;
+    }
+
+    @Override
+    public void open() throws Exception {
+      this.file.rewind();
+    }
+
+    @Override
+    public Record next() throws Exception {
+      return this.file.next();
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package QueryExecutor.Operators;
+
+import StorageManager.Objects.Record;
+
+/**
+ * Produces the cartesian product of two inputs, each record of the left input
+ * followed by each record of the right one. The right input is read again for
+ * every record of the left one rather than held.
+ */
+public class JoinOperator implements Operator {
+  private Operator left;
+  private Operator right;
+  private Record leftRecord;
+
+  public JoinOperator(Operator left, Operator right) {
+    this.left = left;
+    this.right = right;
+  }
+
+  @Override
+  public void open() throws Exception {
+    this.left.open();
+    this.leftRecord = this.left.next();
+    this.right.open();
+  }
+
+  @Override
+  public Record next() throws Exception {
+    while (this.leftRecord != null) {
+      Record rightRecord = this.right.next();
+      if (rightRecord != null) {
+        return new Record(this.leftRecord, rightRecord);
+      }
+      // start the right input over for the next left record
+      this.right.close();
+      this.leftRecord = this.left.next();
+      if (this.leftRecord != null) {
+        this.right.open();
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public void close() throws Exception {
+    this.leftRecord = null;
+    this.left.close();
+    this.right.close();
+  }
+}
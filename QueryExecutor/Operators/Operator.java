@@ -0,0 +1,32 @@
+package QueryExecutor.Operators;
+
+import StorageManager.Objects.Record;
+
+/**
+ * An operator of a query plan. The operator above it pulls its records one at a
+ * time, so only what an operator needs to produce the next record is held rather
+ * than every record of its input. An operator that is closed can be opened again,
+ * it then starts over from its first record.
+ */
+public interface Operator {
+
+  /**
+   * Prepares the operator to produce its first record
+   *
+   * @throws Exception
+   */
+  public void open() throws Exception;
+
+  /**
+   * @return the next record, null once there are no more
+   * @throws Exception
+   */
+  public Record next() throws Exception;
+
+  /**
+   * Lets go of what the operator holds, closing an operator that is not open does nothing
+   *
+   * @throws Exception
+   */
+  public void close() throws Exception;
+}
@@ -0,0 +1,46 @@
+package QueryExecutor.Operators;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import StorageManager.Objects.Record;
+
+/**
+ * Produces the records of its input cut down to some of their attributes
+ */
+public class ProjectOperator implements Operator {
+  private Operator child;
+  private List<Integer> attributeIndexes;
+
+  /**
+   * @param child            The input
+   * @param attributeIndexes The indexes of the attributes to keep, in the order they are kept in
+   */
+  public ProjectOperator(Operator child, List<Integer> attributeIndexes) {
+    this.child = child;
+    this.attributeIndexes = attributeIndexes;
+  }
+
+  @Override
+  public void open() throws Exception {
+    this.child.open();
+  }
+
+  @Override
+  public Record next() throws Exception {
+    Record record = this.child.next();
+    if (record == null) {
+      return null;
+    }
+    List<Object> values = new ArrayList<>(this.attributeIndexes.size());
+    for (int index : this.attributeIndexes) {
+      values.add(record.getValue(index));
+    }
+    return new Record(values);
+  }
+
+  @Override
+  public void close() throws Exception {
+    this.child.close();
+  }
+}
@@ -0,0 +1,37 @@
+package QueryExecutor.Operators;
+
+import StorageManager.StorageManager;
+import StorageManager.TableCursor;
+import StorageManager.Objects.Record;
+
+/**
+ * Produces every record of a table in key order, a page at a time
+ */
+public class ScanOperator implements Operator {
+  private int tableNumber;
+  private TableCursor cursor;
+
+  public ScanOperator(int tableNumber) {
+    this.tableNumber = tableNumber;
+  }
+
+  @Override
+  public void open() throws Exception {
+    this.cursor = StorageManager.getStorageManager().openTableCursor(this.tableNumber);
+  }
+
+  @Override
+  public Record next() throws Exception {
+    if (!this.cursor.hasRecord()) {
+      return null;
+    }
+    Record record = this.cursor.getRecord();
+    this.cursor.next();
+    return record;
+  }
+
+  @Override
+  public void close() {
+    this.cursor = null;
+  }
+}
@@ -0,0 +1,52 @@
+package QueryExecutor.Operators;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import StorageManager.Objects.Record;
+
+/**
+ * Produces the records of its input in order. It has to see every record before
+ * it can produce the first, so it reads its whole input when it is opened and
+ * holds it until it is closed. Records that compare equal keep their input order.
+ */
+public class SortOperator implements Operator {
+  private Operator child;
+  private Comparator<Record> comparator;
+  private List<Record> records;
+  private int position;
+
+  public SortOperator(Operator child, Comparator<Record> comparator) {
+    this.child = child;
+    this.comparator = comparator;
+  }
+
+  @Override
+  public void open() throws Exception {
+    this.records = new ArrayList<>();
+    this.child.open();
+    try {
+      for (Record record = this.child.next(); record != null; record = this.child.next()) {
+        this.records.add(record);
+      }
+    } finally {
+      this.child.close();
+    }
+    this.records.sort(this.comparator);
+    this.position = 0;
+  }
+
+  @Override
+  public Record next() {
+    if (this.position >= this.records.size()) {
+      return null;
+    }
+    return this.records.get(this.position++);
+  }
+
+  @Override
+  public void close() {
+    this.records = null;
+  }
+}
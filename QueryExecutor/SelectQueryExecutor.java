@@ -2,7 +2,6 @@ package QueryExecutor;
 
 import java.util.ArrayList;
 
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -10,8 +9,17 @@ import java.util.Map;
 import java.util.Set;
 
 import Parser.Select;
+import Parser.WhereTreeNodes.AttributeNode;
+import Parser.WhereTreeNodes.ComparisonOpNode;
 import Parser.WhereTreeNodes.WhereTree;
-import StorageManager.StorageManager;
+import QueryExecutor.Operators.FilterOperator;
+import QueryExecutor.Operators.HashJoinOperator;
+import QueryExecutor.Operators.JoinOperator;
+import QueryExecutor.Operators.Operator;
+import QueryExecutor.Operators.ProjectOperator;
+import QueryExecutor.Operators.ScanOperator;
+import QueryExecutor.Operators.SortOperator;
+import StorageManager.SpillFile;
 import StorageManager.TableSchema;
 import StorageManager.Objects.AttributeSchema;
 import StorageManager.Objects.Catalog;
@@ -20,9 +28,11 @@ import StorageManager.Objects.Record;
 import StorageManager.Objects.MessagePrinter.MessageType;
 
 public class SelectQueryExecutor implements QueryExecutorInterface {
+  // rows are printed in chunks of about this many characters
+  private static final int PRINT_CHUNK = 8192;
+
   private Select select;
   private TableSchema schema;
-  private List<Record> records;
 
   public SelectQueryExecutor(Select select) {
     this.select = select;
@@ -30,128 +40,239 @@ public class SelectQueryExecutor implements QueryExecutorInterface {
 
   @Override
   public void excuteQuery() throws Exception {
-    // execute - gets all records that are valid per the query
-    this.validateQuery();
-    this.orderBy();
-    this.select();
+    // execute - builds the plan of operators, the records are only read as the result is printed
+    Operator plan = this.validateQuery();
+    plan = this.orderBy(plan);
+    this.select(plan);
 
     MessagePrinter.printMessage(MessageType.SUCCESS, null);
   }
 
   /**
-   * Gets all relevant records, performs a cartesian product if necessary
+   * Gets an operator over all relevant records, a cartesian product if necessary
    *
-   * @param storageManager - Storage manager of the program
-   * @return - List of relavent records
+   * @return - Operator producing the relavent records
    * @throws Exception
    */
-  private List<Record> getAllRecords(StorageManager storageManager) throws Exception {
+  private Operator getAllRecords() throws Exception {
     // call build schema to create the schema
     this.buildSchema();
 
     // check to see if there is only 1 table
-    // if so, return all records from that table
+    // if so, read the records of that table the where clause may hold for
     List<String> tables = select.getTableNames();
-    List<Record> firstTable = storageManager.getAllRecords(select.getTableNames().get(0));
     if (tables.size() == 1) {
-      return firstTable;
+      return AccessPath.getOperator(this.schema, select.getWhereTree());
     }
 
-    // if more than one table, get all records
-    // of all of the tables, and compute the cartesian product of them
+    // if more than one table, join each of the tables onto the ones before it,
+    // a hash join on the attributes the where clause requires to be equal across
+    // the two if it has any, otherwise the cartesian product
+    List<ComparisonOpNode> comparisons = new ArrayList<>();
+    WhereTree where = select.getWhereTree();
+    if (where != null && where.getRoot() != null) {
+      AccessPath.collectComparisons(where.getRoot(), comparisons);
+    }
 
-    // NOTE: CHECK FOR CLONING ISSUES?
+    Catalog catalog = Catalog.getCatalog();
+    TableSchema firstSchema = catalog.getSchema(tables.get(0));
+    Operator firstTable = new ScanOperator(firstSchema.getTableNumber());
+    // roughly how many records the joins so far give, to pick the side of a hash join to build
+    long firstSize = firstSchema.getRecords();
+    int firstWidth = firstSchema.getAttributes().size();
+    boolean hashed = false;
 
     for (int i = 1; i < tables.size(); i++) {
-      List<Record> nextTable = storageManager.getAllRecords(select.getTableNames().get(i));
-      List<Record> resultTable = new ArrayList<>();
-      for (int j = 0; j < firstTable.size(); j++) {
-        for (int k = 0; k < nextTable.size(); k++) {
-          resultTable.add(new Record(firstTable.get(j), nextTable.get(k)));
+      TableSchema nextSchema = catalog.getSchema(tables.get(i));
+      Operator nextTable = new ScanOperator(nextSchema.getTableNumber());
+      long nextSize = nextSchema.getRecords();
+      int nextWidth = nextSchema.getAttributes().size();
+
+      List<Integer> firstKeys = new ArrayList<>();
+      List<Integer> nextKeys = new ArrayList<>();
+      for (ComparisonOpNode comparison : comparisons) {
+        int[] pair = this.getJoinPair(comparison);
+        if (pair != null && pair[0] < firstWidth && pair[1] >= firstWidth && pair[1] < firstWidth + nextWidth) {
+          firstKeys.add(pair[0]);
+          nextKeys.add(pair[1] - firstWidth);
         }
       }
-      firstTable = resultTable;
+
+      if (firstKeys.isEmpty()) {
+        firstTable = new JoinOperator(firstTable, nextTable);
+        firstSize *= nextSize;
+      } else {
+        // the joins so far give the first attributes of the combined schema, should they be spilled
+        TableSchema joinedSchema = new TableSchema("temp");
+        joinedSchema.setAttributes(new ArrayList<>(this.schema.getAttributes().subList(0, firstWidth)));
+        firstTable = new HashJoinOperator(firstTable, nextTable, firstKeys, nextKeys, joinedSchema, nextSchema,
+            firstSize <= nextSize);
+        firstSize = Math.max(firstSize, nextSize);
+        hashed = true;
+      }
+      firstWidth += nextWidth;
+    }
+
+    if (hashed) {
+      // the pairs the hash joins skip are never evaluated, an unknown attribute is reported here instead
+      AccessPath.resolveAttributes(this.schema, where.getRoot());
     }
 
     return firstTable;
 
   }
 
-  private String buildResultString(List<Record> records, List<String> attributeNames) {
+  /**
+   * @param comparison A comparison the where clause requires
+   * @return the indexes of the two attributes the comparison requires to be equal, the lower first,
+   *         null if it is not an equality of two attributes of the same type
+   */
+  private int[] getJoinPair(ComparisonOpNode comparison) {
+    if (!comparison.getOperator().equals("=") || !(comparison.getLeftChild() instanceof AttributeNode)
+        || !(comparison.getRightChild() instanceof AttributeNode)) {
+      return null;
+    }
+    int left;
+    int right;
+    try {
+      left = ((AttributeNode) comparison.getLeftChild()).getIndex(this.schema);
+      right = ((AttributeNode) comparison.getRightChild()).getIndex(this.schema);
+    } catch (Exception e) {
+      // the filter reports the unknown attribute
+      return null;
+    }
+    // values of different types are never equal, comparing them is an error the filter reports
+    if (this.schema.getAttributes().get(left).getType() != this.schema.getAttributes().get(right).getType()) {
+      return null;
+    }
+    return new int[] { Math.min(left, right), Math.max(left, right) };
+  }
+
+  /**
+   * Prints the records a plan produces as a table. The columns are as wide as their
+   * widest value, so the records are held until the plan has produced them all,
+   * spilled once they take more memory than the buffer holds pages. The plan is
+   * only run once.
+   *
+   * @param resultSchema The attributes of the records the plan produces, to spill them
+   */
+  private void printResult(Operator plan, List<String> attributeNames, TableSchema resultSchema)
+      throws Exception {
     int numAttributes = attributeNames.size();
     int[] columnWidths = new int[numAttributes];
-
-    // Calculate maximum width for each column
     for (int i = 0; i < numAttributes; i++) {
-      int maxWidth = attributeNames.get(i).length();
-      for (Record record : records) {
-        Object value = record.getValues().get(i);
-        if (value != null) {
-          if (value instanceof String) {
-            maxWidth = Math.max(maxWidth, value.toString().length() + 2);
-          } else {
-            maxWidth = Math.max(maxWidth, value.toString().length());
+      columnWidths[i] = attributeNames.get(i).length();
+    }
+
+    Catalog catalog = Catalog.getCatalog();
+    long memoryLimit = (long) catalog.getBufferSize() * catalog.getPageSize();
+    List<Record> records = new ArrayList<>();
+    long recordsSize = 0;
+    SpillFile spilled = null;
+    try {
+      // Hold the records, calculating the maximum width for each column
+      plan.open();
+      try {
+        for (Record record = plan.next(); record != null; record = plan.next()) {
+          for (int i = 0; i < numAttributes; i++) {
+            Object value = record.getValue(i);
+            if (value != null) {
+              if (value instanceof String) {
+                columnWidths[i] = Math.max(columnWidths[i], value.toString().length() + 2);
+              } else {
+                columnWidths[i] = Math.max(columnWidths[i], value.toString().length());
+              }
+            }
+          }
+
+          if (spilled != null) {
+            spilled.add(record);
+            continue;
+          }
+          records.add(record);
+          recordsSize += record.computeSize();
+          if (recordsSize > memoryLimit) {
+            spilled = new SpillFile(resultSchema);
+            for (Record held : records) {
+              spilled.add(held);
+            }
+            records.clear();
           }
         }
+      } finally {
+        plan.close();
       }
-      columnWidths[i] = maxWidth;
-    }
 
-    StringBuilder resultString = new StringBuilder();
+      StringBuilder resultString = new StringBuilder();
+      resultString.append("\n");
 
-    // Build top border
-    for (int width : columnWidths) {
-      resultString.append("-").append("-".repeat(width + 2)); // Add 2 for padding
-    }
-    resultString.append("-\n");
-
-    // Build attribute names row
-    for (int i = 0; i < numAttributes; i++) {
-      String attributeName = attributeNames.get(i);
-      resultString.append(String.format("| %-" + (columnWidths[i]) + "s ", attributeName));
-    }
-    resultString.append("|\n");
+      // Build top border
+      for (int width : columnWidths) {
+        resultString.append("-").append("-".repeat(width + 2)); // Add 2 for padding
+      }
+      resultString.append("-\n");
 
-    // Build separator row
-    for (int i = 0; i < numAttributes; i++) {
-      resultString.append("|" + "-".repeat(columnWidths[i] + 2)); // Add 2 for padding
-    }
-    resultString.append("|\n");
+      // Build attribute names row
+      for (int i = 0; i < numAttributes; i++) {
+        String attributeName = attributeNames.get(i);
+        resultString.append(String.format("| %-" + (columnWidths[i]) + "s ", attributeName));
+      }
+      resultString.append("|\n");
 
-    // Build data rows
-    for (Record record : records) {
+      // Build separator row
       for (int i = 0; i < numAttributes; i++) {
-        Object value = record.getValues().get(i);
-        String formattedValue = "";
-        if (value instanceof String) {
-          formattedValue = (value == null) ? "" : "\"" + value.toString() + "\"";
-        } else {
-          formattedValue = (value == null) ? "" : value.toString();
-        }
-        resultString.append(String.format("| %-" + (columnWidths[i]) + "s ", formattedValue));
+        resultString.append("|" + "-".repeat(columnWidths[i] + 2)); // Add 2 for padding
       }
       resultString.append("|\n");
-    }
 
-    return resultString.toString();
+      // Build data rows
+      if (spilled == null) {
+        for (Record record : records) {
+          appendRow(resultString, record, columnWidths);
+        }
+      } else {
+        spilled.rewind();
+        for (Record record = spilled.next(); record != null; record = spilled.next()) {
+          appendRow(resultString, record, columnWidths);
+        }
+      }
+
+      System.out.println(resultString.toString());
+    } finally {
+      if (spilled != null) {
+        spilled.delete();
+      }
+    }
   }
 
-  private void validateQuery() throws Exception {
-    StorageManager storageManager = StorageManager.getStorageManager();
+  /**
+   * Appends a row of the table, printing the rows so far once they make up a chunk
+   */
+  private static void appendRow(StringBuilder resultString, Record record, int[] columnWidths) {
+    for (int i = 0; i < columnWidths.length; i++) {
+      Object value = record.getValue(i);
+      String formattedValue = "";
+      if (value instanceof String) {
+        formattedValue = (value == null) ? "" : "\"" + value.toString() + "\"";
+      } else {
+        formattedValue = (value == null) ? "" : value.toString();
+      }
+      resultString.append(String.format("| %-" + (columnWidths[i]) + "s ", formattedValue));
+    }
+    resultString.append("|\n");
+    if (resultString.length() >= PRINT_CHUNK) {
+      System.out.print(resultString);
+      resultString.setLength(0);
+    }
+  }
 
-    List<Record> allRecords = this.getAllRecords(storageManager);
+  private Operator validateQuery() throws Exception {
+    Operator allRecords = this.getAllRecords();
 
-    this.records = new ArrayList<>();
     if (this.select.getWhereTree() != null) {
-      WhereTree where = this.select.getWhereTree();
-      for (Record i : allRecords) {
-        if (where.evaluate(this.schema, i)) {
-          this.records.add(i);
-        }
-      }
-    } else {
-      this.records.addAll(allRecords);
+      return new FilterOperator(allRecords, this.select.getWhereTree(), this.schema);
     }
+    return allRecords;
 
   }
 
@@ -198,13 +319,13 @@ public class SelectQueryExecutor implements QueryExecutorInterface {
 
   }
 
-  private void orderBy() throws Exception {
+  private Operator orderBy(Operator plan) throws Exception {
     String orderAttr = this.select.getOrderByAttribute();
 
     Catalog catalog = Catalog.getCatalog();
 
     if (orderAttr == null) {
-      return;
+      return plan;
     }
 
     String[] orderParts = orderAttr.split("\\.");
@@ -266,20 +387,21 @@ public class SelectQueryExecutor implements QueryExecutorInterface {
       MessagePrinter.printMessage(MessageType.ERROR, String.format("%s is ambigious", orderAttr));
     }
 
-    Collections.sort(this.records, (a, b) -> a.compareTo(b, foundIndex.get(0)));
+    int orderIndex = foundIndex.get(0);
+    return new SortOperator(plan, (a, b) -> a.compareTo(b, orderIndex));
 
   }
 
-  private void select() throws Exception {
-    List<Record> recordsWithSelectedAttributes = new ArrayList<>();
+  private void select(Operator plan) throws Exception {
     List<String> attributeNames = new ArrayList<>();
     Set<String> selectedAttributeNames = new LinkedHashSet<>(this.select.getAttributeNames());
+    // the attributes of the records printed, those of every table unless some are selected
+    TableSchema resultSchema = this.schema;
 
     if (selectedAttributeNames.contains("*")) {
       for (AttributeSchema attributeSchema : this.schema.getAttributes()) {
         attributeNames.add(attributeSchema.getAttributeName());
       }
-      recordsWithSelectedAttributes.addAll(this.records);
     } else {
       Map<String, Integer> attributeIndexMap = new HashMap<>();
       for (int i = 0; i < this.schema.getAttributes().size(); i++) {
@@ -321,23 +443,25 @@ public class SelectQueryExecutor implements QueryExecutorInterface {
         }
       }
 
-      for (Record record : this.records) {
-        Record newRecord = new Record(new ArrayList<>());
-        for (String attributeName : attributeNames) {
-          int index = attributeIndexMap.getOrDefault(attributeName, -1);
-          if (index != -1) {
-            newRecord.getValues().add(record.getValues().get(index));
-          }
+      List<Integer> attributeIndexes = new ArrayList<>();
+      for (String attributeName : attributeNames) {
+        int index = attributeIndexMap.getOrDefault(attributeName, -1);
+        if (index != -1) {
+          attributeIndexes.add(index);
         }
-        recordsWithSelectedAttributes.add(newRecord);
       }
+      plan = new ProjectOperator(plan, attributeIndexes);
+
+      List<AttributeSchema> projectedAttributes = new ArrayList<>();
+      for (int index : attributeIndexes) {
+        projectedAttributes.add(this.schema.getAttributes().get(index));
+      }
+      resultSchema = new TableSchema("temp");
+      resultSchema.setAttributes(projectedAttributes);
     }
 
-    // build result string
-    StringBuilder resultStringBuilder = new StringBuilder();
-    resultStringBuilder.append("\n");
-    resultStringBuilder.append(buildResultString(recordsWithSelectedAttributes, attributeNames));
-    System.out.println(resultStringBuilder.toString());
+    // print result
+    this.printResult(plan, attributeNames, resultSchema);
   }
 
 }
@@ -6,6 +6,8 @@ import java.util.List;
 
 import Parser.Insert;
 import Parser.Update;
+import QueryExecutor.Operators.FilterOperator;
+import QueryExecutor.Operators.Operator;
 import StorageManager.StorageManager;
 import StorageManager.TableSchema;
 import StorageManager.Objects.AttributeSchema;
@@ -59,16 +61,20 @@ public class UpdateQueryExecutor implements QueryExecutorInterface{
       MessagePrinter.printMessage(MessageType.ERROR, update.getColumn() + " does not exist for table " + update.getTableName());
     }
 
-    List<Record> records = StorageManager.getStorageManager().getAllRecords(tableSchema.getTableNumber());
+    Operator records = new FilterOperator(AccessPath.getOperator(tableSchema, update.getWhereTree()),
+        update.getWhereTree(), tableSchema);
     int primaryKeyIndex = tableSchema.getPrimaryIndex();
-    for (Record record : records) {
-      List<Object> copyValues = new ArrayList<>(record.getValues());
-      Record newRecord = new Record(copyValues);
-      if (update.getWhereTree().evaluate(tableSchema, record)) {
-        this.primaryKeys.add(record.getValues().get(primaryKeyIndex));
+    records.open();
+    try {
+      for (Record record = records.next(); record != null; record = records.next()) {
+        List<Object> copyValues = new ArrayList<>(record.getValues());
+        Record newRecord = new Record(copyValues);
+        this.primaryKeys.add(record.getValue(primaryKeyIndex));
         newRecord.getValues().set(attrbuteIndex, this.update.getValue());
         this.newRecords.add(newRecord);
       }
+    } finally {
+      records.close();
     }
   }
 
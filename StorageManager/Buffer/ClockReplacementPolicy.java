@@ -0,0 +1,119 @@
+package StorageManager.Buffer;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import StorageManager.Objects.BufferPage;
+
+/**
+ * CLOCK replacement: frames sit on a circular array with a reference bit each.
+ * An access only sets the bit. To find a victim the hand sweeps the circle,
+ * clearing set bits and stopping at the first frame whose bit is already clear,
+ * which approximates LRU without reordering anything on access.
+ */
+public class ClockReplacementPolicy implements ReplacementPolicy {
+    public static final String NAME = "clock";
+
+    private BufferPage[] frames;
+    private boolean[] referenced;
+    private Map<BufferPage, Integer> slots;
+    private Deque<Integer> freeSlots;
+    private int hand;
+
+    public ClockReplacementPolicy(int capacity) {
+        capacity = Math.max(capacity, 1);
+        this.frames = new BufferPage[capacity];
+        this.referenced = new boolean[capacity];
+        this.slots = new IdentityHashMap<>(capacity * 2);
+        this.freeSlots = new ArrayDeque<>(capacity);
+        for (int i = 0; i < capacity; i++) {
+            this.freeSlots.add(i);
+        }
+        this.hand = 0;
+    }
+
+    @Override
+    public void admit(BufferPage page) {
+        if (this.freeSlots.isEmpty()) {
+            this.grow();
+        }
+        int slot = this.freeSlots.poll();
+        this.frames[slot] = page;
+        this.referenced[slot] = true;
+        this.slots.put(page, slot);
+    }
+
+    @Override
+    public void touch(BufferPage page) {
+        Integer slot = this.slots.get(page);
+        if (slot != null) {
+            this.referenced[slot] = true;
+        }
+    }
+
+    @Override
+    public void remove(BufferPage page) {
+        Integer slot = this.slots.remove(page);
+        if (slot != null) {
+            this.frames[slot] = null;
+            this.referenced[slot] = false;
+            this.freeSlots.push(slot);
+        }
+    }
+
+    @Override
+    public BufferPage evict() {
+        if (this.slots.isEmpty()) {
+            return null;
+        }
+        // two full sweeps are enough: the first clears every reference bit,
+        // if the second finds nothing every frame is pinned
+        for (int step = 0; step < this.frames.length * 2; step++) {
+            int slot = this.hand;
+            this.hand = (this.hand + 1) % this.frames.length;
+            BufferPage page = this.frames[slot];
+            if (page == null || page.isPinned()) {
+                continue;
+            }
+            if (this.referenced[slot]) {
+                this.referenced[slot] = false;
+            } else {
+                this.remove(page);
+                return page;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(this.frames, null);
+        Arrays.fill(this.referenced, false);
+        this.slots.clear();
+        this.freeSlots.clear();
+        for (int i = 0; i < this.frames.length; i++) {
+            this.freeSlots.add(i);
+        }
+        this.hand = 0;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * Makes room for more frames than the policy was created with
+     */
+    private void grow() {
+        int oldCapacity = this.frames.length;
+        this.frames = Arrays.copyOf(this.frames, oldCapacity * 2);
+        this.referenced = Arrays.copyOf(this.referenced, oldCapacity * 2);
+        for (int i = oldCapacity; i < this.frames.length; i++) {
+            this.freeSlots.add(i);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package StorageManager.Buffer;
+
+import StorageManager.Objects.BufferPage;
+
+/**
+ * Decides which page leaves the buffer when a frame is needed.
+ * The storage manager owns the frames and tells the policy about
+ * every page that enters, is accessed in, or leaves the buffer.
+ */
+public interface ReplacementPolicy {
+
+    /**
+     * Registers a page that was just placed into the buffer
+     *
+     * @param page  The page that now occupies a frame
+     */
+    public void admit(BufferPage page);
+
+    /**
+     * Records an access to a page that is already in the buffer
+     *
+     * @param page  The page that was accessed
+     */
+    public void touch(BufferPage page);
+
+    /**
+     * Forgets a page that leaves the buffer without being chosen
+     * as a victim, for example when its table is dropped
+     *
+     * @param page  The page that left the buffer
+     */
+    public void remove(BufferPage page);
+
+    /**
+     * Chooses the page to evict and forgets it
+     * Pinned pages are never chosen
+     *
+     * @return  The victim page, or null if every page is pinned
+     *          or the policy holds no pages
+     */
+    public BufferPage evict();
+
+    /**
+     * Forgets every page, used once the whole buffer has been written out
+     */
+    public void clear();
+
+    /**
+     * @return  The name the policy is selected by
+     */
+    public String getName();
+}
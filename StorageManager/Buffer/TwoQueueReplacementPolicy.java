@@ -0,0 +1,178 @@
+package StorageManager.Buffer;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import StorageManager.Objects.BufferPage;
+import StorageManager.Objects.Utility.FrameKey;
+
+/**
+ * 2Q replacement (Johnson and Shasha).
+ * Pages read for the first time go into a small FIFO (A1in). Only a page that
+ * is read again after falling out of A1in, while its key is still remembered
+ * by the ghost queue (A1out), is admitted to the main LRU queue (Am).
+ * A sequential scan therefore cycles through A1in and never pushes the
+ * working set of repeatedly used pages out of Am.
+ */
+public class TwoQueueReplacementPolicy implements ReplacementPolicy {
+    public static final String NAME = "2q";
+
+    private class Entry {
+        private BufferPage page;
+        private Entry prev;
+        private Entry next;
+        private boolean hot;
+
+        private Entry(BufferPage page) {
+            this.page = page;
+        }
+    }
+
+    /**
+     * Doubly linked queue, the head is the most recent end
+     */
+    private class Queue {
+        private Entry head;
+        private Entry tail;
+        private int size;
+
+        private void addFirst(Entry entry) {
+            entry.prev = null;
+            entry.next = this.head;
+            if (this.head != null) {
+                this.head.prev = entry;
+            }
+            this.head = entry;
+            if (this.tail == null) {
+                this.tail = entry;
+            }
+            this.size++;
+        }
+
+        private void unlink(Entry entry) {
+            if (entry.prev != null) {
+                entry.prev.next = entry.next;
+            } else {
+                this.head = entry.next;
+            }
+            if (entry.next != null) {
+                entry.next.prev = entry.prev;
+            } else {
+                this.tail = entry.prev;
+            }
+            entry.prev = null;
+            entry.next = null;
+            this.size--;
+        }
+
+        private void clear() {
+            this.head = null;
+            this.tail = null;
+            this.size = 0;
+        }
+    }
+
+    private Queue a1in;
+    private Queue am;
+    private Set<FrameKey> a1out;
+    private Map<BufferPage, Entry> entries;
+    private int maxA1in;
+    private int maxA1out;
+
+    public TwoQueueReplacementPolicy(int capacity) {
+        // sizes recommended by the 2Q paper: Kin = 25% and Kout = 50% of the buffer
+        this.maxA1in = Math.max(1, capacity / 4);
+        this.maxA1out = Math.max(1, capacity / 2);
+        this.a1in = new Queue();
+        this.am = new Queue();
+        this.a1out = new LinkedHashSet<>();
+        this.entries = new IdentityHashMap<>(capacity * 2);
+    }
+
+    @Override
+    public void admit(BufferPage page) {
+        Entry entry = new Entry(page);
+        if (this.a1out.remove(page.getFrameKey())) {
+            // seen recently enough to be part of the working set
+            entry.hot = true;
+            this.am.addFirst(entry);
+        } else {
+            this.a1in.addFirst(entry);
+        }
+        this.entries.put(page, entry);
+    }
+
+    @Override
+    public void touch(BufferPage page) {
+        Entry entry = this.entries.get(page);
+        if (entry != null && entry.hot) {
+            this.am.unlink(entry);
+            this.am.addFirst(entry);
+        }
+        // hits in A1in are deliberately ignored, they are usually correlated references
+    }
+
+    @Override
+    public void remove(BufferPage page) {
+        Entry entry = this.entries.remove(page);
+        if (entry != null) {
+            (entry.hot ? this.am : this.a1in).unlink(entry);
+        }
+    }
+
+    @Override
+    public BufferPage evict() {
+        Entry victim = null;
+        if (this.a1in.size > this.maxA1in) {
+            victim = this.oldestUnpinned(this.a1in);
+        }
+        if (victim == null) {
+            victim = this.oldestUnpinned(this.am);
+        }
+        if (victim == null) {
+            victim = this.oldestUnpinned(this.a1in);
+        }
+
+        if (victim == null) {
+            return null;
+        }
+        if (!victim.hot) {
+            this.rememberEvicted(victim.page.getFrameKey());
+        }
+        this.remove(victim.page);
+        return victim.page;
+    }
+
+    @Override
+    public void clear() {
+        this.a1in.clear();
+        this.am.clear();
+        this.a1out.clear();
+        this.entries.clear();
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    private Entry oldestUnpinned(Queue queue) {
+        Entry entry = queue.tail;
+        while (entry != null && entry.page.isPinned()) {
+            entry = entry.prev;
+        }
+        return entry;
+    }
+
+    private void rememberEvicted(FrameKey key) {
+        this.a1out.add(key);
+        if (this.a1out.size() > this.maxA1out) {
+            Iterator<FrameKey> oldest = this.a1out.iterator();
+            oldest.next();
+            oldest.remove();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package StorageManager;
+
+/**
+ * Background thread that writes changed frames to hardware ahead of eviction.
+ * Once more than the high ratio of the buffer is dirty it writes dirty, unpinned
+ * frames in small batches until the ratio falls to the low ratio. Each batch holds
+ * the storage manager's lock only briefly, so queries interleave with it, and
+ * the victims they evict are usually clean and need no write on their thread.
+ *
+ * A batch that fails to write leaves its frames changed, so they are written
+ * synchronously when they are evicted or the buffer is purged, where an error
+ * that persists reaches the query. The writer logs the failure and tries again
+ * after the interval rather than stopping.
+ */
+class DirtyPageWriter extends Thread {
+    private static final long INTERVAL_MILLIS = 50;
+    private static final int BATCH_SIZE = 8;
+
+    private final StorageManager storageManager;
+    private final double lowRatio;
+    private final double highRatio;
+    private volatile boolean running;
+    // the message of the failure being retried, it is logged once rather than on every attempt
+    private String failure;
+
+    DirtyPageWriter(StorageManager storageManager, double lowRatio, double highRatio) {
+        super("dirty-page-writer");
+        this.storageManager = storageManager;
+        this.lowRatio = lowRatio;
+        this.highRatio = highRatio;
+        this.running = true;
+        this.setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+        while (this.running) {
+            try {
+                if (this.storageManager.getDirtyRatio() > this.highRatio) {
+                    while (this.running && this.storageManager.getDirtyRatio() > this.lowRatio
+                            && this.storageManager.writeDirtyPages(BATCH_SIZE) > 0) {
+                        Thread.yield();
+                    }
+                }
+                this.failure = null;
+            } catch (Exception e) {
+                if (!String.valueOf(e.getMessage()).equals(this.failure)) {
+                    System.err.println("Background page writer failed, the pages will be written on eviction: "
+                            + e.getMessage());
+                    this.failure = String.valueOf(e.getMessage());
+                }
+            }
+            try {
+                Thread.sleep(INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Stops the writer and waits for the batch in progress to finish
+     * The thread is not interrupted, an interrupt would close any file
+     * channel it is writing through
+     */
+    void shutdown() throws InterruptedException {
+        this.running = false;
+        this.join();
+    }
+}
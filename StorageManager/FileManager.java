@@ -0,0 +1,341 @@
+package StorageManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.lang.reflect.Field;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import StorageManager.Objects.MessagePrinter;
+import StorageManager.Objects.MessagePrinter.MessageType;
+
+/**
+ * Keeps table and index files open between page reads and writes.
+ * Channels are cached in least recently used order and the eldest one
+ * is closed once more than the maximum number of files are open.
+ * A channel must be closed before its file is deleted, otherwise later
+ * writes would land in the deleted file.
+ *
+ * Each file starts with an int header (its number of pages). The manager
+ * remembers the header it last wrote and the size the file has been grown
+ * to, so page writes only touch the header when it changes and the file
+ * grows in extents rather than with every appended page.
+ *
+ * In memory mapped mode files are accessed through MappedByteBuffer regions
+ * instead: reads decode straight from the mapping without a system call and
+ * writes copy into it. A file is first mapped at its length, reading it never
+ * grows it, and a write past the mapping grows it by remapping it in chunks.
+ * The mappings a remap replaces are kept until the file is closed, blocks read
+ * from them may still be decoding, then every mapping of the file is released.
+ */
+public class FileManager {
+    public static final String CHANNEL_MODE = "channel";
+    public static final String MMAP_MODE = "mmap";
+
+    private static final int MAX_OPEN_FILES = 64;
+    private static final long MAP_CHUNK_SIZE = 256 * 1024;
+
+    private LinkedHashMap<String, FileChannel> openFiles;
+    private Map<String, Integer> headers;
+    private Map<String, Long> allocatedSizes;
+    private Map<String, MappedByteBuffer> mappings;
+    // mappings replaced by larger ones, released when their file is closed
+    private Map<String, List<MappedByteBuffer>> supersededMappings;
+    private ByteBuffer headerBuffer;
+    private boolean memoryMapped;
+
+    /**
+     * @param storageMode   channel for positional reads and writes,
+     *                      mmap for memory mapped files
+     */
+    public FileManager(String storageMode) throws Exception {
+        switch (storageMode) {
+            case CHANNEL_MODE:
+                this.memoryMapped = false;
+                break;
+            case MMAP_MODE:
+                this.memoryMapped = true;
+                break;
+            default:
+                MessagePrinter.printMessage(MessageType.ERROR, String.format("Unknown storage mode: %s", storageMode));
+        }
+        this.headers = new HashMap<>();
+        this.allocatedSizes = new HashMap<>();
+        this.mappings = new HashMap<>();
+        this.supersededMappings = new HashMap<>();
+        this.headerBuffer = ByteBuffer.allocate(Integer.BYTES);
+        this.openFiles = new LinkedHashMap<String, FileChannel>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, FileChannel> eldest) {
+                if (this.size() > MAX_OPEN_FILES) {
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public String getStorageMode() {
+        return this.memoryMapped ? MMAP_MODE : CHANNEL_MODE;
+    }
+
+    /**
+     * Gets an open channel to a file, opening it if it is not cached
+     * Reads are positional, gathering writes set the channel's
+     * position right before they write
+     *
+     * @param path      The path of the table or index file
+     * @param create    Whether a missing file should be created,
+     *                  otherwise opening a missing file fails
+     * @return          A channel open for reading and writing
+     * @throws IOException
+     */
+    public FileChannel getChannel(String path, boolean create) throws IOException {
+        FileChannel channel = this.openFiles.get(path);
+        if (channel == null) {
+            File diskFile = new File(path);
+            if (!create && !diskFile.exists()) {
+                // opening read only reports the missing file
+                new RandomAccessFile(diskFile, "r").close();
+            }
+            // closing the channel closes the file as well
+            channel = new RandomAccessFile(diskFile, "rw").getChannel();
+            this.openFiles.put(path, channel);
+        }
+        return channel;
+    }
+
+    /**
+     * Reads a block of an existing file
+     *
+     * @param path      The path of the table or index file
+     * @param position  The offset of the block
+     * @param scratch   A zero filled buffer whose limit is the block size,
+     *                  filled by positional reads when the file is not mapped
+     * @return          A buffer positioned at the start of the block, either the
+     *                  scratch buffer or a view of the mapping. Bytes past the end
+     *                  of the file read as zeros
+     * @throws IOException
+     */
+    public ByteBuffer readBlock(String path, long position, ByteBuffer scratch) throws IOException {
+        FileChannel channel = this.getChannel(path, false);
+        int size = scratch.limit();
+        if (this.memoryMapped) {
+            MappedByteBuffer mapping = this.mappings.get(path);
+            if (mapping == null) {
+                mapping = this.map(path, channel.size(), false);
+            }
+            if (position + size <= mapping.capacity()) {
+                return mapping.slice((int) position, size);
+            }
+        }
+
+        while (scratch.hasRemaining()) {
+            if (channel.read(scratch, position + scratch.position()) < 0) {
+                break;
+            }
+        }
+        scratch.clear();
+        scratch.limit(size);
+        return scratch;
+    }
+
+    /**
+     * Writes consecutive blocks to a file, growing the file first if they end past it
+     * Unmapped files get a single gathering write
+     *
+     * @param path          The path of the table or index file
+     * @param position      The offset of the first block
+     * @param blocks        The bytes to write, each from 0 up to its limit
+     * @param extentSize    The number of bytes to grow an unmapped file by at a time
+     * @throws IOException
+     */
+    public void writeBlocks(String path, long position, ByteBuffer[] blocks, long extentSize) throws IOException {
+        long size = 0;
+        for (ByteBuffer block : blocks) {
+            block.position(0);
+            size += block.limit();
+        }
+        if (this.memoryMapped) {
+            long end = position + size;
+            MappedByteBuffer mapping = this.mappings.get(path);
+            if (mapping == null || mapping.capacity() < end) {
+                mapping = this.map(path, end, true);
+            }
+            int offset = (int) position;
+            for (ByteBuffer block : blocks) {
+                mapping.put(offset, block, 0, block.limit());
+                offset += block.limit();
+            }
+            return;
+        }
+
+        this.allocate(path, position + size, extentSize);
+        FileChannel channel = this.getChannel(path, true);
+        // gathering writes start at the channel's own position
+        channel.position(position);
+        long written = 0;
+        while (written < size) {
+            written += channel.write(blocks);
+        }
+    }
+
+    /**
+     * Writes the header of a file if it differs from the one last written
+     *
+     * @param path  The path of the table or index file
+     * @param value The number of pages in the file
+     * @throws IOException
+     */
+    public void writeHeader(String path, int value) throws IOException {
+        Integer written = this.headers.get(path);
+        if (written != null && written == value) {
+            return;
+        }
+        this.headerBuffer.clear();
+        this.headerBuffer.putInt(value);
+        this.headerBuffer.flip();
+        this.writeBlocks(path, 0, new ByteBuffer[] { this.headerBuffer }, Integer.BYTES);
+        this.headers.put(path, value);
+    }
+
+    /**
+     * Makes sure a file is at least end bytes long, growing it by whole extents
+     * Only the last byte of the new extent is written, the rest reads as zeros
+     *
+     * @param path          The path of the table or index file
+     * @param end           The offset the next write ends at
+     * @param extentSize    The number of bytes to grow the file by at a time
+     * @throws IOException
+     */
+    private void allocate(String path, long end, long extentSize) throws IOException {
+        FileChannel channel = this.getChannel(path, true);
+        Long allocated = this.allocatedSizes.get(path);
+        if (allocated == null) {
+            allocated = channel.size();
+        }
+        if (end > allocated) {
+            long extents = (end - allocated + extentSize - 1) / extentSize;
+            allocated += extents * extentSize;
+            channel.write(ByteBuffer.allocate(1), allocated - 1);
+        }
+        this.allocatedSizes.put(path, allocated);
+    }
+
+    /**
+     * Maps a file from its start, replacing its previous mapping
+     *
+     * @param size  The number of bytes to cover
+     * @param grow  Whether the mapping is for a write, it is then rounded up to
+     *              whole chunks, growing the file if it ends past it. A mapping
+     *              for a read covers only size bytes, the length of the file
+     */
+    private MappedByteBuffer map(String path, long size, boolean grow) throws IOException {
+        FileChannel channel = this.getChannel(path, true);
+        long mappedSize = size;
+        if (grow) {
+            long chunks = Math.max(1, (size + MAP_CHUNK_SIZE - 1) / MAP_CHUNK_SIZE);
+            mappedSize = chunks * MAP_CHUNK_SIZE;
+        }
+        if (mappedSize > Integer.MAX_VALUE) {
+            throw new IOException(String.format("%s is too large to be memory mapped", path));
+        }
+        MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, mappedSize);
+        MappedByteBuffer superseded = this.mappings.put(path, mapping);
+        if (superseded != null) {
+            this.supersededMappings.computeIfAbsent(path, key -> new ArrayList<>()).add(superseded);
+        }
+        return mapping;
+    }
+
+    /**
+     * Releases every mapping of a file
+     *
+     * @param force Whether the current mapping is forced to hardware first,
+     *              not when the file is about to be deleted. The mappings it
+     *              replaced share its pages, it covers all of them
+     */
+    private void unmapFile(String path, boolean force) {
+        MappedByteBuffer mapping = this.mappings.remove(path);
+        if (mapping != null) {
+            if (force) {
+                mapping.force();
+            }
+            unmap(mapping);
+        }
+        List<MappedByteBuffer> superseded = this.supersededMappings.remove(path);
+        if (superseded != null) {
+            for (MappedByteBuffer supersededMapping : superseded) {
+                unmap(supersededMapping);
+            }
+        }
+    }
+
+    /**
+     * Unmaps a mapping right away rather than once it is collected, through the
+     * cleaner the JDK exposes for this. Where it is not available the mapping is
+     * left to the collector.
+     */
+    private static void unmap(MappedByteBuffer mapping) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(theUnsafe.get(null), mapping);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // released once the collector finds it unreachable
+        }
+    }
+
+    /**
+     * Closes the cached channel of a file, if there is one, forgets its
+     * header and size and releases its mappings
+     * Used before the file is deleted, so the mappings are not forced
+     *
+     * @param path  The path of the file
+     */
+    public void closeFile(String path) {
+        this.headers.remove(path);
+        this.allocatedSizes.remove(path);
+        this.unmapFile(path, false);
+        FileChannel channel = this.openFiles.remove(path);
+        if (channel != null) {
+            closeQuietly(channel);
+        }
+    }
+
+    /**
+     * Forces every mapping to hardware, releases it and closes every cached channel
+     */
+    public void closeAll() {
+        List<String> mappedPaths = new ArrayList<>(this.mappings.keySet());
+        mappedPaths.addAll(this.supersededMappings.keySet());
+        for (String path : mappedPaths) {
+            this.unmapFile(path, true);
+        }
+        this.headers.clear();
+        this.allocatedSizes.clear();
+        Iterator<FileChannel> channels = this.openFiles.values().iterator();
+        while (channels.hasNext()) {
+            closeQuietly(channels.next());
+            channels.remove();
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close file: " + e.getMessage());
+        }
+    }
+}
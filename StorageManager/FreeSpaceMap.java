@@ -0,0 +1,104 @@
+package StorageManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Remembers the number of free bytes in each page of a table, so the storage
+ * manager can tell whether a page has room without reading it from hardware.
+ *
+ * An entry is refreshed whenever its page is written to hardware. A page held
+ * in the buffer is asked directly, so the map only has to be right for pages
+ * that are not. The map is a hint: a page picked through it is checked again
+ * once it is read, and a page the map knows nothing about has no free bytes.
+ *
+ * The map is kept next to the table file as an int with the number of pages
+ * followed by one unsigned short per page.
+ */
+public class FreeSpaceMap {
+    private int[] freeBytes;
+    private int numPages;
+    private boolean changed;
+
+    public FreeSpaceMap() {
+        this.freeBytes = new int[16];
+        this.numPages = 0;
+        this.changed = false;
+    }
+
+    /**
+     * Reads the map of a table, a missing file gives an empty map
+     *
+     * @param path  The path of the map file
+     * @return      The map
+     * @throws IOException
+     */
+    public static FreeSpaceMap load(String path) throws IOException {
+        FreeSpaceMap map = new FreeSpaceMap();
+        File mapFile = new File(path);
+        if (!mapFile.exists()) {
+            return map;
+        }
+        try (RandomAccessFile mapAccessFile = new RandomAccessFile(mapFile, "r")) {
+            byte[] bytes = new byte[(int) mapAccessFile.length()];
+            mapAccessFile.readFully(bytes);
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            int numPages = buffer.getInt();
+            for (int pageNumber = 1; pageNumber <= numPages; pageNumber++) {
+                map.setFreeBytes(pageNumber, buffer.getShort() & 0xFFFF);
+            }
+        }
+        map.changed = false;
+        return map;
+    }
+
+    /**
+     * Writes the map to hardware
+     *
+     * @param path  The path of the map file
+     * @throws IOException
+     */
+    public void save(String path) throws IOException {
+        try (RandomAccessFile mapAccessFile = new RandomAccessFile(new File(path), "rw")) {
+            ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + Short.BYTES * this.numPages);
+            buffer.putInt(this.numPages);
+            for (int i = 0; i < this.numPages; i++) {
+                buffer.putShort((short) this.freeBytes[i]);
+            }
+            byte[] bytes = buffer.array();
+            mapAccessFile.write(bytes);
+            mapAccessFile.setLength(bytes.length);
+        }
+        this.changed = false;
+    }
+
+    /**
+     * @param pageNumber    The number of the page
+     * @return the free bytes of the page as last written, 0 if the page is not known
+     */
+    public int getFreeBytes(int pageNumber) {
+        if (pageNumber < 1 || pageNumber > this.numPages) {
+            return 0;
+        }
+        return this.freeBytes[pageNumber - 1];
+    }
+
+    public void setFreeBytes(int pageNumber, int free) {
+        if (pageNumber > this.freeBytes.length) {
+            this.freeBytes = Arrays.copyOf(this.freeBytes, Math.max(pageNumber, this.freeBytes.length * 2));
+        }
+        if (pageNumber > this.numPages) {
+            // pages in between have not been written yet
+            this.numPages = pageNumber;
+        }
+        this.freeBytes[pageNumber - 1] = free;
+        this.changed = true;
+    }
+
+    public boolean isChanged() {
+        return this.changed;
+    }
+}
@@ -0,0 +1,50 @@
+package StorageManager;
+
+import StorageManager.Objects.Catalog;
+import StorageManager.Objects.NodeKeys;
+
+/**
+ * A B+ tree index kept in its own file, either the primary key index of a table
+ * or a secondary index on one of its attributes. The nodes of an index are
+ * buffered under its index number, which for the primary key index is the
+ * number of the table and for a secondary index is negative.
+ */
+public interface IndexSchema {
+
+  public int getIndexNumber();
+
+  /**
+   * @return the number of the table the index is on
+   */
+  public int getTableNumber();
+
+  /**
+   * @return the name of the index file within the indexing directory
+   */
+  public String getIndexFileName();
+
+  /**
+   * @return empty keys of the type the nodes of the index hold
+   */
+  public NodeKeys createKeys();
+
+  public int getRootNumber();
+
+  public void setRoot(int rootNumber);
+
+  public int getNumIndexPages();
+
+  public int incrementNumIndexPages();
+
+  public void setNumIndexPages(int num);
+
+  /**
+   * @return the most children an internal node of the index has
+   */
+  public int computeN(Catalog catalog) throws Exception;
+
+  /**
+   * @return the size of the slot of a node in the index file
+   */
+  public int computeSizeOfNode(Catalog catalog) throws Exception;
+}
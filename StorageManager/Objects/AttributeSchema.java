@@ -3,12 +3,15 @@ package StorageManager.Objects;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 
+import Parser.Type;
+
 public class AttributeSchema implements java.io.Serializable, SchemaInterface {
     private String attributeName;
     private String dataType;
     private boolean notNull;
     private boolean primaryKey;
     private boolean unique;
+    private transient Type type;
 
     public AttributeSchema(String attributeName, String dataType, boolean notNull, boolean primaryKey, boolean unique) {
         this.attributeName = attributeName;
@@ -44,6 +47,28 @@ public class AttributeSchema implements java.io.Serializable, SchemaInterface {
 
     public void setDataType(String dataType) {
         this.dataType = dataType;
+        this.type = null;
+    }
+
+    /**
+     * Gets the type of the attribute's values, worked out once from the data type
+     *
+     * @return  INTEGER, DOUBLE, BOOLEAN or STRING, null for an unknown data type
+     */
+    public Type getType() {
+        if (this.type == null) {
+            String lowerDataType = this.dataType.toLowerCase();
+            if (lowerDataType.equals("integer")) {
+                this.type = Type.INTEGER;
+            } else if (lowerDataType.equals("double")) {
+                this.type = Type.DOUBLE;
+            } else if (lowerDataType.equals("boolean")) {
+                this.type = Type.BOOLEAN;
+            } else if (lowerDataType.contains("char")) {
+                this.type = Type.STRING;
+            }
+        }
+        return this.type;
     }
 
     public boolean isNotNull() {
@@ -1,19 +1,19 @@
 package StorageManager.Objects;
 
 import StorageManager.StorageManager;
-import StorageManager.TableSchema;
+import StorageManager.IndexSchema;
 import StorageManager.Objects.MessagePrinter.MessageType;
 
 public class BPlusTree {
   private Node root;
   private int N;
-  private TableSchema tableSchema;
-  private int tableNumber;
+  private IndexSchema indexSchema;
+  private int indexNumber;
 
-  public BPlusTree(TableSchema tableSchema, Node root) throws Exception {
-    this.tableSchema = tableSchema;
-    this.tableNumber = tableSchema.getTableNumber();
-    this.N = tableSchema.computeN(Catalog.getCatalog());
+  public BPlusTree(IndexSchema indexSchema, Node root) throws Exception {
+    this.indexSchema = indexSchema;
+    this.indexNumber = indexSchema.getIndexNumber();
+    this.N = indexSchema.computeN(Catalog.getCatalog());
     this.root = root;
   }
 
@@ -21,33 +21,18 @@ public class BPlusTree {
     return N - 1;
   }
 
+  /**
+   * @return the fewest keys a node other than the root keeps, a node left with fewer after
+   *         a delete borrows from or merges with a sibling
+   */
   public int getMinKeysPerNode() {
     return (N - 1) / 2;
   }
 
-  public int getMinKeysForNode(Node node) {
-    if (node == root) {
-      return 1;
-    }
-    return getMinKeysPerNode();
-  }
-
-  public int getMinKeysForLeafNode(Node node) {
-    if (node == root) {
-      return 1;
-    }
-    return (N - 1) / 2;
-  }
-
   public int getMaxChildrenPerNode() {
       return N;
   }
 
-  public int getMinChildrenPerNode(Node node) {
-    if (node == root) return 2;
-    return (int) Math.ceil((double) N / 2);
-  }
-
   public Node getRoot() {
     return this.root;
   }
@@ -56,60 +41,125 @@ public class BPlusTree {
     this.root = newRoot;
   }
 
-  @SuppressWarnings({ "rawtypes", "unchecked" })
   public Bucket canInsert(Object primaryKey) throws Exception {
-    Node currentNode = root;
-
-    while (!currentNode.isLeaf()) {
-      InternalNode internalNode = (InternalNode) currentNode;
-      int pos = internalNode.findInsertPosition(primaryKey);
-      int childPageNumber = internalNode.getChildrenPointers().get(pos);
-      currentNode = StorageManager.getStorageManager().getNodePage(tableNumber, childPageNumber);
-    }
-
-    LeafNode leafNode = (LeafNode) currentNode;
+    LeafNode leafNode = findLeaf(primaryKey);
     int pos = leafNode.findInsertPosition(primaryKey);
 
-    if (pos < leafNode.getNumKeys() && ((Comparable) leafNode.getPrimaryKeys().get(pos)).compareTo(primaryKey) == 0) {
-       MessagePrinter.printMessage(MessageType.ERROR, String.format("primaryKey: (%d) already exist", primaryKey.toString()));
+    if (leafNode.isKeyAt(pos, primaryKey)) {
+       MessagePrinter.printMessage(MessageType.ERROR, String.format("primaryKey: (%s) already exist", primaryKey.toString()));
     }
 
     if (pos - 1 < 0) {
-      return leafNode.getBuckets().get(0);
+      return leafNode.getBucket(0);
     } else {
-      return leafNode.getBuckets().get(pos - 1);
+      return leafNode.getBucket(pos - 1);
     }
   }
 
-  @SuppressWarnings({ "rawtypes", "unchecked" })
   public Bucket search(Object primaryKey) throws Exception {
+    LeafNode leafNode = findLeaf(primaryKey);
+    int pos = leafNode.findInsertPosition(primaryKey);
+
+    if (leafNode.isKeyAt(pos, primaryKey)) {
+      return leafNode.getBucket(pos);
+    }
+
+    return null;
+  }
+
+  /**
+   * @return a cursor at the first entry with a key greater than or equal to the given one
+   */
+  public IndexCursor seek(Object primaryKey) throws Exception {
+    LeafNode leafNode = findLeaf(primaryKey);
+    return new IndexCursor(leafNode, leafNode.findInsertPosition(primaryKey));
+  }
+
+  /**
+   * @return a cursor at the entry with the smallest key
+   */
+  public IndexCursor first() throws Exception {
+    return new IndexCursor(firstLeaf(), 0);
+  }
+
+  /**
+   * Range scan over the keys between two bounds, a single descent to the lower bound
+   * and then along the leaves up to the upper one
+   *
+   * @param lower           The lowest key, null to start at the smallest key
+   * @param lowerInclusive  Whether the lowest key itself is in the range
+   * @param upper           The highest key, null to go on to the largest key
+   * @param upperInclusive  Whether the highest key itself is in the range
+   * @return a cursor over the entries in the range
+   */
+  public IndexCursor scan(Object lower, boolean lowerInclusive, Object upper, boolean upperInclusive) throws Exception {
+    if (lower == null) {
+      return new IndexCursor(firstLeaf(), 0, upper, upperInclusive);
+    }
+
+    LeafNode leafNode = findLeaf(lower);
+    int pos = leafNode.findInsertPosition(lower);
+    if (!lowerInclusive && leafNode.isKeyAt(pos, lower)) {
+      pos++;
+    }
+    return new IndexCursor(leafNode, pos, upper, upperInclusive);
+  }
+
+  private LeafNode firstLeaf() throws Exception {
+    Node currentNode = root;
+
+    while (!currentNode.isLeaf()) {
+      currentNode = StorageManager.getStorageManager().getNodePage(indexNumber, ((InternalNode) currentNode).getChild(0));
+    }
+
+    return (LeafNode) currentNode;
+  }
+
+  /**
+   * Descends from the root to the leaf a key belongs in,
+   * a key equal to a separator is in the subtree to its right
+   */
+  private LeafNode findLeaf(Object primaryKey) throws Exception {
     Node currentNode = root;
 
     while (!currentNode.isLeaf()) {
       InternalNode internalNode = (InternalNode) currentNode;
-      int pos = internalNode.findInsertPosition(primaryKey);
-      if (pos < internalNode.numPrimaryKeys && ((Comparable) internalNode.getPrimaryKeys().get(pos)).compareTo(primaryKey) == 0) {
-        // go to the right if key is equal;
-        int childPageNumber = internalNode.getChildrenPointers().get(pos + 1);
-        currentNode = StorageManager.getStorageManager().getNodePage(tableNumber, childPageNumber);
-      } else {
-        int childPageNumber = internalNode.getChildrenPointers().get(pos);
-        currentNode = StorageManager.getStorageManager().getNodePage(tableNumber, childPageNumber);
-      }
+      int childPageNumber = internalNode.getChild(internalNode.findChildPosition(primaryKey));
+      currentNode = StorageManager.getStorageManager().getNodePage(indexNumber, childPageNumber);
     }
 
-    LeafNode leafNode = (LeafNode) currentNode;
+    return (LeafNode) currentNode;
+  }
+
+  /**
+   * Points the entry of a key at a new bucket, used when its record moves to another page.
+   * The tree keeps its shape, only the leaf holding the key changes
+   */
+  public void updateBucket(Object primaryKey, Bucket bucket) throws Exception {
+    LeafNode leafNode = findLeaf(primaryKey);
     int pos = leafNode.findInsertPosition(primaryKey);
 
-    if (pos < leafNode.getNumKeys() && ((Comparable) leafNode.getPrimaryKeys().get(pos)).compareTo(primaryKey) == 0) {
-      return leafNode.getBuckets().get(pos);
+    if (leafNode.isKeyAt(pos, primaryKey)) {
+      leafNode.setBucket(pos, bucket);
+      leafNode.setChanged();
+    } else {
+      MessagePrinter.printMessage(MessageType.ERROR, String.format("No record of primary key: (%s) in the index", primaryKey));
     }
-
-    return null;
   }
 
+  /**
+   * Nodes touched by a single insert or delete stay pinned until it returns,
+   * splits and merges hold references to several of them at once
+   */
   public void insert(Object primaryKey, Object value) throws Exception {
-    root.insertKey(primaryKey, value, this);
+    StorageManager storageManager = StorageManager.getStorageManager();
+    storageManager.beginPinScope();
+    try {
+      storageManager.pinForScope(root);
+      root.insertKey(primaryKey, value, this);
+    } finally {
+      storageManager.endPinScope();
+    }
   }
 
   public void update(Object oldPrimaryKey, Object newPrimaryKey, Object newValue) throws Exception {
@@ -117,125 +167,47 @@ public class BPlusTree {
     insert(newPrimaryKey, newValue);
   }
 
+  /**
+   * Each internal node on the way down rebalances the child the key was deleted
+   * from, so a node that falls short of keys is fixed by its parent, which holds
+   * the separators of its siblings. An empty leaf stays as the root of an empty tree
+   */
   public void delete(Object primaryKey) throws Exception {
-    root.deleteKey(primaryKey, this);
+    StorageManager storageManager = StorageManager.getStorageManager();
+    storageManager.beginPinScope();
+    try {
+      storageManager.pinForScope(root);
+      root.deleteKey(primaryKey, this);
+      if (!root.isLeaf() && root.getNumKeys() == 0) {
+        // the root lost its last separator to a merge, its only child takes its place
+        Node child = storageManager.getNodePage(indexNumber, ((InternalNode) root).getChild(0));
+        child.setParentPageNumber(-1);
+        root = child;
+        indexSchema.setRoot(child.getPageNumber());
+      }
+    } finally {
+      storageManager.endPinScope();
+    }
   }
 
   public void insertInParent(Node leftNode, Node rightNode, Object middleKey) throws Exception {
     if (leftNode == root) {
-      InternalNode newRoot = new InternalNode(tableNumber, tableSchema.getNumIndexPages() + 1, -1);
-      tableSchema.incrementNumIndexPages();
+      InternalNode newRoot = new InternalNode(indexNumber, indexSchema.getNumIndexPages() + 1, -1);
+      indexSchema.incrementNumIndexPages();
       newRoot.setChanged();
       StorageManager.getStorageManager().addPageToBuffer(newRoot);
       newRoot.primaryKeys.add(middleKey);
-      ++newRoot.numPrimaryKeys;
-      newRoot.getChildrenPointers().add(leftNode.getPageNumber());
-      newRoot.getChildrenPointers().add(rightNode.getPageNumber());
+      newRoot.addChild(0, leftNode.getPageNumber());
+      newRoot.addChild(1, rightNode.getPageNumber());
       leftNode.setParentPageNumber(newRoot.getPageNumber());
       rightNode.setParentPageNumber(newRoot.getPageNumber());
       root = newRoot;
-      tableSchema.setRoot(root.pageNumber);
-    } else {
-      InternalNode parent = (InternalNode) StorageManager.getStorageManager().getNodePage(tableNumber, leftNode.getParentPageNumber());
-      parent.insertKey(middleKey, rightNode.getParentPageNumber(), this);
-      if(!parent.getPrimaryKeys().contains(middleKey)) {
-        leftNode.setParentPageNumber(parent.getPageNumber());
-        parent.getChildrenPointers().add(leftNode.getPageNumber());
-        InternalNode rightSibling = this.getRightInternalSibling(parent);
-        rightSibling.getChildrenPointers().set(0, rightNode.getPageNumber());
-        rightNode.setParentPageNumber(rightSibling.getPageNumber());
-        return;
-      }
-      if (parent.getPrimaryKeys().indexOf(middleKey) == parent.numPrimaryKeys - 1) {
-        parent.getChildrenPointers().add(rightNode.getPageNumber());
-      } else {
-        parent.getChildrenPointers().add(parent.getPrimaryKeys().indexOf(middleKey) + 1, rightNode.getPageNumber());
-      }
-    }
-  }
-
-  public void deleteInParent(Node node) throws Exception {
-    if (node == root && node.numPrimaryKeys == 0) {
-      root = null;
+      indexSchema.setRoot(root.pageNumber);
     } else {
-      InternalNode parent = (InternalNode) StorageManager.getStorageManager().getNodePage(tableNumber, node.getParentPageNumber());
-      int pointerIndex = parent.getChildrenPointers().indexOf(node.getPageNumber());
-      parent.getChildrenPointers().remove(pointerIndex);
-      if (pointerIndex == 0) {
-        parent.getPrimaryKeys().remove(pointerIndex);
-      } else {
-        parent.getPrimaryKeys().remove(pointerIndex - 1);
-      }
-      parent.numPrimaryKeys--;
-      node.getPrimaryKeys().clear(); // remove all keys to indicate dead node
-      node.numPrimaryKeys = 0;
-
-      if (parent.numPrimaryKeys == 0 && parent == this.getRoot()) {
-        if (!parent.getChildrenPointers().isEmpty()) {
-          // If there's only one child left, make it the new root
-          this.setRoot(StorageManager.getStorageManager().getNodePage(tableNumber, parent.getChildrenPointers().get(0)));
-          Catalog.getCatalog().getSchema(tableNumber).setRoot(StorageManager.getStorageManager().getNodePage(tableNumber, parent.getChildrenPointers().get(0)).pageNumber);
-          this.root.parentPageNumber = -1;
-        } else {
-          this.setRoot(null); // Empty tree
-          Catalog.getCatalog().getSchema(tableNumber).setRoot(1);
-          Catalog.getCatalog().getSchema(tableNumber).setNumIndexPages(0);
-        }
-      }
-    }
-  }
-
-  public LeafNode getLeftSibling(LeafNode node) throws Exception {
-    if (node.getParentPageNumber() == -1) {
-      return null;
-    }
-
-    InternalNode parent = (InternalNode) StorageManager.getStorageManager().getNodePage(tableNumber, node.getParentPageNumber());
-    int index = parent.getChildrenPointers().indexOf(node.getPageNumber());
-    if (index > 0) {
-      return (LeafNode) StorageManager.getStorageManager().getNodePage(tableNumber, parent.getChildrenPointers().get(index - 1));
+      InternalNode parent = (InternalNode) StorageManager.getStorageManager().getNodePage(indexNumber, leftNode.getParentPageNumber());
+      // a split of the parent moves the right node along with its pointer
+      rightNode.setParentPageNumber(parent.getPageNumber());
+      parent.insertChild(leftNode.getPageNumber(), middleKey, rightNode.getPageNumber(), this);
     }
-
-    return null;
-  }
-
-  public LeafNode getRightSibling(LeafNode node) throws Exception {
-    if (node.getParentPageNumber() == -1) {
-      return null;
-    }
-
-    InternalNode parent = (InternalNode) StorageManager.getStorageManager().getNodePage(tableNumber, node.getParentPageNumber());
-    int index = parent.getChildrenPointers().indexOf(node.getPageNumber());
-    if (index < parent.getChildrenPointers().size() - 1) {
-      return (LeafNode) StorageManager.getStorageManager().getNodePage(tableNumber, parent.getChildrenPointers().get(index + 1));
-    }
-
-    return null;
   }
-
-  public InternalNode getLeftInternalSibling(InternalNode node) throws Exception {
-    if (node.getParentPageNumber() == -1) {
-        return null;
-    }
-    InternalNode parent = (InternalNode) StorageManager.getStorageManager().getNodePage(tableNumber, node.getParentPageNumber());
-    int index = parent.getChildrenPointers().indexOf(node.getPageNumber());
-    if (index > 0) {
-        return (InternalNode) StorageManager.getStorageManager().getNodePage(tableNumber, parent.getChildrenPointers().get(index - 1));
-    }
-    return null;
 }
-
-  public InternalNode getRightInternalSibling(InternalNode node) throws Exception {
-    if (node.getParentPageNumber() == -1) {
-        return null;
-    }
-    InternalNode parent = (InternalNode) StorageManager.getStorageManager().getNodePage(tableNumber, node.getParentPageNumber());
-    int index = parent.getChildrenPointers().indexOf(node.getPageNumber());
-    if (index < parent.getChildrenPointers().size() - 1) {
-        return (InternalNode) StorageManager.getStorageManager().getNodePage(tableNumber, parent.getChildrenPointers().get(index + 1));
-    }
-    return null;
-  }
-
-
-}
\ No newline at end of file
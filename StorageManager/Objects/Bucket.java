@@ -1,20 +1,25 @@
 package StorageManager.Objects;
 
+/**
+ * Where a record is kept, its page and its record id in that page.
+ * The record id does not change when other records of the page
+ * are inserted or deleted, only when the record moves to another page.
+ */
 public class Bucket {
   private int pageNumber;
-  private int index;
+  private int recordId;
 
-  public Bucket(int pageNumber, int index) {
+  public Bucket(int pageNumber, int recordId) {
       this.pageNumber = pageNumber;
-      this.index = index;
+      this.recordId = recordId;
   }
 
   public int getPageNumber() {
       return pageNumber;
   }
 
-  public int getIndex() {
-      return index;
+  public int getRecordId() {
+      return recordId;
   }
 }
 
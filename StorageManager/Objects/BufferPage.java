@@ -1,20 +1,19 @@
 package StorageManager.Objects;
 
-import java.io.RandomAccessFile;
-import java.util.Comparator;
+import java.nio.ByteBuffer;
 
 import StorageManager.TableSchema;
+import StorageManager.Objects.Utility.FrameKey;
 
-public abstract class BufferPage implements Comparator<BufferPage> {
-    protected long priority;
+public abstract class BufferPage {
     protected boolean changed;
     protected int tableNumber;
     protected int pageNumber;
+    private int pinCount;
 
     public BufferPage(int tableNumber, int pageNumber) {
         this.tableNumber = tableNumber;
         this.pageNumber = pageNumber;
-        this.setPriority();
     }
 
     /**
@@ -34,11 +33,10 @@ public abstract class BufferPage implements Comparator<BufferPage> {
     }
 
     /**
-     * Sets the priority of this page
-     * This is used in ordering the buffer for LRU
+     * Marks the page as matching what is on hardware, used once it has been written
      */
-    public void setPriority() {
-        this.priority = System.currentTimeMillis();
+    public void clearChanged() {
+        this.changed = false;
     }
 
     /**
@@ -54,33 +52,55 @@ public abstract class BufferPage implements Comparator<BufferPage> {
         return this.pageNumber;
     }
 
-    public void decrementPageNumber() {
-        this.pageNumber--;
-        this.setChanged();
+    /**
+     * Gets the key this page is stored under in the buffer's frame table
+     *
+     * @return  The frame key for the page's current table and page number
+     */
+    public FrameKey getFrameKey() {
+        return new FrameKey(this.tableNumber, this.pageNumber, this instanceof Node);
     }
 
-    public void setPageNumber(int n) {
-        this.pageNumber = n;
-        this.setChanged();
+    /**
+     * Pins the page, a pinned page is never chosen as an eviction victim
+     * Every pin must be matched by an unpin
+     */
+    public void pin() {
+        this.pinCount++;
     }
 
     /**
-     * Compare function used for the priority queue
-     * of the buffer to determine which page is LRU
+     * Releases one pin on the page
      */
-    @Override
-    public int compare(BufferPage o1, BufferPage o2) {
-        if (o1.priority > o2.priority) {
-            return 1;
-        } else if (o1.priority == o2.priority) {
-            return 0;
-        } else {
-            return -1;
+    public void unpin() {
+        if (this.pinCount > 0) {
+            this.pinCount--;
         }
     }
 
-    public abstract void readFromHardware(RandomAccessFile tableAccessFile, TableSchema tableSchema) throws Exception;
+    /**
+     * Returns whether or not this page is pinned in the buffer
+     *
+     * @return  bool
+     */
+    public boolean isPinned() {
+        return this.pinCount > 0;
+    }
+
+    public void setPageNumber(int n) {
+        this.pageNumber = n;
+        this.setChanged();
+    }
+
+    /**
+     * Decodes the page from a block read from hardware, the buffer is positioned
+     * after the fields the storage manager already read to identify the page
+     */
+    public abstract void readFromHardware(ByteBuffer buffer, TableSchema tableSchema) throws Exception;
 
-    public abstract void writeToHardware(RandomAccessFile tableAccessFile) throws Exception;
+    /**
+     * Encodes the whole page into a block that is written to hardware
+     */
+    public abstract void writeToHardware(ByteBuffer buffer) throws Exception;
 
 }
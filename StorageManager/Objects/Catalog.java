@@ -11,13 +11,19 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import QueryExecutor.InsertQueryExcutor;
+import StorageManager.IndexSchema;
+import StorageManager.SecondaryIndex;
 import StorageManager.StorageManager;
 import StorageManager.TableSchema;
 import StorageManager.Objects.MessagePrinter.MessageType;
 
 public class Catalog implements java.io.Serializable, CatalogInterface {
     private static Catalog catalog;
+    // the schemas and indexes are changed under the storage manager's lock, its background
+    // page writer reads them under that lock to write the frames of their files
     private Map<Integer, TableSchema> schemas;
+    // secondary indexes by index number
+    private Map<Integer, SecondaryIndex> indexes;
     private String dbLocation;
     private String catalogLocation;
     private int pageSize;
@@ -29,6 +35,7 @@ public class Catalog implements java.io.Serializable, CatalogInterface {
         this.dbLocation = dbLocation;
         this.bufferSize = bufferSize;
         this.schemas = new HashMap<>();
+        this.indexes = new HashMap<>();
         if (pageSize == -1) {
             loadCatalog();
         } else {
@@ -70,6 +77,12 @@ public class Catalog implements java.io.Serializable, CatalogInterface {
             this.schemas.get(tableNum).saveSchema(catalogAccessFile);
         }
 
+        // Write the secondary indexes after the tables they are on
+        catalogAccessFile.writeInt(this.indexes.size());
+        for (SecondaryIndex index : this.indexes.values()) {
+            index.saveSchema(catalogAccessFile);
+        }
+
         catalogAccessFile.close();
 
     }
@@ -110,6 +123,14 @@ public class Catalog implements java.io.Serializable, CatalogInterface {
             this.schemas.put(tableNumber, tableSchema);
         }
 
+        // Read the secondary indexes
+        int numOfIndexes = catalogAccessFile.readInt();
+        for (int i = 0; i < numOfIndexes; ++i) {
+            SecondaryIndex index = new SecondaryIndex();
+            index.loadSchema(catalogAccessFile);
+            this.indexes.put(index.getIndexNumber(), index);
+        }
+
         catalogAccessFile.close();
     }
 
@@ -119,8 +140,16 @@ public class Catalog implements java.io.Serializable, CatalogInterface {
     @Override
     public void dropTableSchema(int tableNumber) {
         try {
-            schemas.remove(tableNumber);
-            StorageManager.getStorageManager().dropTable(tableNumber);
+            StorageManager storageManager = StorageManager.getStorageManager();
+            synchronized (storageManager) {
+                // the indexes on the table go with it, the frames of each go before its schema
+                for (SecondaryIndex index : this.getIndexes(tableNumber)) {
+                    storageManager.dropIndex(index);
+                    this.indexes.remove(index.getIndexNumber());
+                }
+                storageManager.dropTable(tableNumber);
+                schemas.remove(tableNumber);
+            }
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -270,7 +299,134 @@ public class Catalog implements java.io.Serializable, CatalogInterface {
                         "Table of name " + schema.getTableName() + " already exists");
             }
         }
-        this.schemas.put(tableSchema.getTableNumber(), tableSchema);
+
+        synchronized (StorageManager.getStorageManager()) {
+            this.schemas.put(tableSchema.getTableNumber(), tableSchema);
+
+            // each unique attribute gets an index of its own, the primary key already has one
+            for (AttributeSchema attributeSchema : tableSchema.getAttributes()) {
+                if (attributeSchema.isUnique() && !attributeSchema.isPrimaryKey()) {
+                    int indexNumber = this.nextIndexNumber();
+                    // index names are alphanumeric, the underscore keeps this one from clashing with a created one
+                    SecondaryIndex index = new SecondaryIndex(attributeSchema.getAttributeName() + "_unique",
+                            indexNumber, tableSchema.getTableNumber(), attributeSchema.getAttributeName(), true);
+                    // an attribute too large for the nodes to hold enough of is checked against every record instead
+                    if (index.computeN(this) >= SecondaryIndex.MIN_N) {
+                        this.indexes.put(indexNumber, index);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void createIndex(String indexName, String tableName, String attributeName) throws Exception {
+        for (SecondaryIndex index : this.indexes.values()) {
+            if (index.getIndexName().equals(indexName)) {
+                MessagePrinter.printMessage(MessageType.ERROR, "Index of name " + indexName + " already exists");
+            }
+        }
+
+        TableSchema tableSchema = this.getSchema(tableName);
+        if (!tableSchema.hasAttribute(attributeName)) {
+            MessagePrinter.printMessage(MessageType.ERROR, "Invalid attribute name: " + attributeName + ".");
+        }
+        if (tableSchema.getAttributes().get(tableSchema.getPrimaryIndex()).getAttributeName().equals(attributeName)) {
+            MessagePrinter.printMessage(MessageType.ERROR,
+                    String.format("%s is the primary key of %s, it does not need an index", attributeName, tableName));
+        }
+        for (SecondaryIndex index : this.getIndexes(tableSchema.getTableNumber())) {
+            if (index.getAttributeName().equals(attributeName)) {
+                MessagePrinter.printMessage(MessageType.ERROR,
+                        String.format("%s of %s is already indexed by %s", attributeName, tableName, index.getIndexName()));
+            }
+        }
+
+        int indexNumber = this.nextIndexNumber();
+        SecondaryIndex index = new SecondaryIndex(indexName, indexNumber, tableSchema.getTableNumber(), attributeName);
+        if (index.computeN(this) < SecondaryIndex.MIN_N) {
+            MessagePrinter.printMessage(MessageType.ERROR, String.format(
+                    "%s of %s is too large to index with a page size of %d", attributeName, tableName, this.pageSize));
+        }
+        StorageManager storageManager = StorageManager.getStorageManager();
+        synchronized (storageManager) {
+            this.indexes.put(indexNumber, index);
+            storageManager.buildIndex(index);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void dropIndex(String indexName) throws Exception {
+        for (SecondaryIndex index : this.indexes.values()) {
+            if (index.getIndexName().equals(indexName)) {
+                if (index.isUnique()) {
+                    MessagePrinter.printMessage(MessageType.ERROR, String.format(
+                            "%s enforces the unique attribute %s, it goes with the attribute", indexName,
+                            index.getAttributeName()));
+                }
+                StorageManager storageManager = StorageManager.getStorageManager();
+                synchronized (storageManager) {
+                    // the frames of the index go before its schema
+                    storageManager.dropIndex(index);
+                    this.indexes.remove(index.getIndexNumber());
+                }
+                return;
+            }
+        }
+        MessagePrinter.printMessage(MessageType.ERROR, String.format("No such index %s", indexName));
+    }
+
+    /**
+     * Secondary indexes are numbered below zero so their nodes never share a frame key with a table's
+     *
+     * @return a number no index has
+     */
+    private int nextIndexNumber() {
+        int indexNumber = -1;
+        for (int number : this.indexes.keySet()) {
+            indexNumber = Math.min(indexNumber, number - 1);
+        }
+        return indexNumber;
+    }
+
+    /**
+     * Adds an index that already has a number, used when a table is altered
+     */
+    public void addIndex(SecondaryIndex index) {
+        synchronized (StorageManager.getStorageManager()) {
+            this.indexes.put(index.getIndexNumber(), index);
+        }
+    }
+
+    /**
+     * @param tableNumber   The number of a table
+     * @return the secondary indexes on the table
+     */
+    public List<SecondaryIndex> getIndexes(int tableNumber) {
+        List<SecondaryIndex> tableIndexes = new ArrayList<>();
+        for (SecondaryIndex index : this.indexes.values()) {
+            if (index.getTableNumber() == tableNumber) {
+                tableIndexes.add(index);
+            }
+        }
+        return tableIndexes;
+    }
+
+    /**
+     * @param indexNumber   The number the nodes of an index are buffered under
+     * @return the primary key index of a table or a secondary index
+     */
+    public IndexSchema getIndexSchema(int indexNumber) {
+        if (indexNumber < 0) {
+            return this.indexes.get(indexNumber);
+        }
+        return this.schemas.get(indexNumber);
     }
 
     public Map<Integer, TableSchema> getSchemas() {
@@ -297,11 +453,15 @@ public class Catalog implements java.io.Serializable, CatalogInterface {
         for (TableSchema tableSchema : schemas) {
             _new.put(tableSchema.getTableNumber(), tableSchema);
         }
-        this.schemas = _new;
+        synchronized (StorageManager.getStorageManager()) {
+            this.schemas = _new;
+        }
     }
 
     public void addSchemas(TableSchema tableSchema) {
-        this.schemas.put(tableSchema.getTableNumber(), tableSchema);
+        synchronized (StorageManager.getStorageManager()) {
+            this.schemas.put(tableSchema.getTableNumber(), tableSchema);
+        }
     }
 
     public String getDbLocation() {
@@ -324,4 +484,8 @@ public class Catalog implements java.io.Serializable, CatalogInterface {
         return indexing;
     }
 
+    public void setIndexing(boolean indexing) {
+        this.indexing = indexing;
+    }
+
 }
@@ -6,6 +6,7 @@ public interface CatalogInterface {
 
   /**
    * The method to create a table in the database.
+   * Each unique attribute other than the primary key gets a unique index.
    *
    * @param tableSchema The schema of the table to be created.
    * @throws Exception if an error occurs during the table creation process.
@@ -35,6 +36,26 @@ public interface CatalogInterface {
   public void alterTableSchema(int tableNumber,String op, String attrName, String attrType, Object val, String isDeflt ,boolean notNull,
                                 boolean pKey, boolean unique) throws Exception;
 
+  /**
+   * Creates a secondary index on an attribute of a table and builds it from the records of the table.
+   *
+   * @param indexName     The name of the index.
+   * @param tableName     The name of the table the index is on.
+   * @param attributeName The name of the indexed attribute, any attribute but the primary key.
+   * @throws Exception if the name is taken, the table or attribute does not exist, the attribute is already indexed
+   *                   or its values are too large for the nodes of an index to hold enough of them.
+   */
+  public void createIndex(String indexName, String tableName, String attributeName) throws Exception;
+
+  /**
+   * Drops a secondary index and deletes its file.
+   *
+   * @param indexName The name of the index.
+   * @throws Exception if there is no index of that name or it is the index of a unique attribute,
+   *                   which is dropped with the attribute.
+   */
+  public void dropIndex(String indexName) throws Exception;
+
   /**
    * Loads the catalog from hardware and obtains a random access file.
    *
@@ -0,0 +1,66 @@
+package StorageManager.Objects;
+
+/**
+ * Walks the entries of a B+ tree in key order, following the links between
+ * the leaves rather than descending from the root for every key.
+ * A cursor with an upper bound stops at the first key past it.
+ * The tree must not change while a cursor is open on it.
+ */
+public class IndexCursor {
+  private LeafNode leaf;
+  private int position;
+  // null for no upper bound
+  private Object upper;
+  private boolean upperInclusive;
+
+  IndexCursor(LeafNode leaf, int position) throws Exception {
+    this(leaf, position, null, false);
+  }
+
+  IndexCursor(LeafNode leaf, int position, Object upper, boolean upperInclusive) throws Exception {
+    this.leaf = leaf;
+    this.position = position;
+    this.upper = upper;
+    this.upperInclusive = upperInclusive;
+    skipToEntry();
+  }
+
+  /**
+   * @return whether the cursor is at an entry, false once it is past the last one or past the upper bound
+   */
+  public boolean hasEntry() {
+    return leaf != null;
+  }
+
+  public Object getKey() {
+    return leaf.getKey(position);
+  }
+
+  public Bucket getBucket() {
+    return leaf.getBucket(position);
+  }
+
+  /**
+   * Moves to the next entry
+   */
+  public void next() throws Exception {
+    position++;
+    skipToEntry();
+  }
+
+  /**
+   * Moves on to the next leaf while the cursor is past the last key of its leaf
+   */
+  private void skipToEntry() throws Exception {
+    while (leaf != null && position >= leaf.getNumKeys()) {
+      leaf = leaf.getNextLeaf();
+      position = 0;
+    }
+    if (leaf != null && upper != null) {
+      int comparison = IndexKey.compareValues(leaf.getKey(position), upper);
+      if (comparison > 0 || (comparison == 0 && !upperInclusive)) {
+        leaf = null;
+      }
+    }
+  }
+}
@@ -0,0 +1,51 @@
+package StorageManager.Objects;
+
+/**
+ * The key of an entry of a secondary index, the value of the indexed attribute
+ * followed by the primary key of the record. The primary key keeps the keys of
+ * records with the same value apart and orders them by primary key.
+ * A key without a primary key comes before every key with its value,
+ * it is used to find the first entry of a value.
+ */
+public class IndexKey implements Comparable<IndexKey> {
+  private final Object value;
+  private final Object primaryKey;
+
+  public IndexKey(Object value, Object primaryKey) {
+    this.value = value;
+    this.primaryKey = primaryKey;
+  }
+
+  public Object getValue() {
+    return value;
+  }
+
+  public Object getPrimaryKey() {
+    return primaryKey;
+  }
+
+  /**
+   * Compares two values of the same type in their natural order
+   */
+  @SuppressWarnings("unchecked")
+  public static int compareValues(Object left, Object right) {
+    return ((Comparable<Object>) left).compareTo(right);
+  }
+
+  @Override
+  public int compareTo(IndexKey other) {
+    int cmp = compareValues(value, other.value);
+    if (cmp != 0) {
+      return cmp;
+    }
+    if (primaryKey == null || other.primaryKey == null) {
+      return primaryKey == null ? (other.primaryKey == null ? 0 : -1) : 1;
+    }
+    return compareValues(primaryKey, other.primaryKey);
+  }
+
+  @Override
+  public String toString() {
+    return "(" + value + ", " + primaryKey + ")";
+  }
+}
@@ -1,343 +1,264 @@
 package StorageManager.Objects;
 
-import java.io.RandomAccessFile;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
 
 import StorageManager.StorageManager;
 import StorageManager.TableSchema;
 
 public class InternalNode extends Node {
-  private List<Integer> childrenPointers;
+  private int[] childrenPointers;
+  private int numChildren;
 
   public InternalNode(int tableNumber, int pageNumber, int parentPageNumber) {
     super(tableNumber, pageNumber, false, parentPageNumber);
-    this.childrenPointers = new ArrayList<>();
+    this.childrenPointers = new int[8];
+    this.numChildren = 0;
   }
 
-  public List<Integer> getChildrenPointers() {
-    return childrenPointers;
+  public int getNumChildren() {
+    return numChildren;
   }
 
-  @Override
-  public void insertKey(Object primaryKey, Object value, BPlusTree tree) throws Exception {
-    int pos = findInsertPosition(primaryKey);
-
-    if (value instanceof Integer) {
-      primaryKeys.add(pos, primaryKey);
-      ++numPrimaryKeys;
-
-      if (numPrimaryKeys > tree.getMaxKeysPerNode()) {
-        splitInternalNode(tree);
-      }
-      this.setChanged();
-      this.setPriority();
-      return;
-    }
-
-    int childPageNumber = childrenPointers.get(pos);
-    Node childNode = StorageManager.getStorageManager().getNodePage(tableNumber, childPageNumber);
-
-    childNode.insertKey(primaryKey, value, tree);
-
-    this.setChanged();
-    this.setPriority();
+  public int getChild(int index) {
+    Objects.checkIndex(index, numChildren);
+    return childrenPointers[index];
   }
 
-  private void splitInternalNode(BPlusTree tree) throws Exception {
-    int midIndex = numPrimaryKeys / 2;
-    InternalNode newRightNode = new InternalNode(tableNumber,
-        Catalog.getCatalog().getSchema(tableNumber).getNumIndexPages() + 1, parentPageNumber);
-    Catalog.getCatalog().getSchema(tableNumber).incrementNumIndexPages();
-    newRightNode.setChanged();
-    StorageManager.getStorageManager().addPageToBuffer(newRightNode);
-
-    for (int i = midIndex + 1; i < numPrimaryKeys; i++) {
-      newRightNode.primaryKeys.add(primaryKeys.get(i));
-    }
-    newRightNode.childrenPointers.addAll(childrenPointers.subList(midIndex, childrenPointers.size()));
-
-    // update parent for new right node child pointers
-    for (int childPageNumber : newRightNode.getChildrenPointers()) {
-      Node childNode = StorageManager.getStorageManager().getNodePage(tableNumber, childPageNumber);
-      childNode.setParentPageNumber(newRightNode.getPageNumber());
-    }
-
-    newRightNode.numPrimaryKeys = newRightNode.primaryKeys.size();
-
-    primaryKeys = primaryKeys.subList(0, midIndex + 1); // Retain only the left half
-    childrenPointers = childrenPointers.subList(0, midIndex);
-    numPrimaryKeys = primaryKeys.size();
-
-    // Promote the middle key to the parent
-    Object middleKey = primaryKeys.get(midIndex);
-    if (this == tree.getRoot()) {
-      // If this node is the root, we need to create a new root
-      InternalNode newRoot = new InternalNode(tableNumber,
-          Catalog.getCatalog().getSchema(tableNumber).getNumIndexPages() + 1, -1);
-      Catalog.getCatalog().getSchema(tableNumber).incrementNumIndexPages();
-      newRoot.setChanged();
-      StorageManager.getStorageManager().addPageToBuffer(newRoot);
-      newRoot.primaryKeys.add(middleKey);
-      primaryKeys.remove(middleKey);
-      --numPrimaryKeys;
-      newRoot.numPrimaryKeys++;
-      newRoot.childrenPointers.add(this.pageNumber);
-      newRoot.childrenPointers.add(newRightNode.getPageNumber());
-      this.setParentPageNumber(newRoot.getPageNumber());
-      newRightNode.setParentPageNumber(newRoot.getPageNumber());
-
-      tree.setRoot(newRoot); // Set the new root
-      Catalog.getCatalog().getSchema(tableNumber).setRoot(newRoot.pageNumber);
-    } else {
-      // Otherwise, insert the middle key into the parent node
-      InternalNode parent = (InternalNode) StorageManager.getStorageManager().getNodePage(tableNumber,
-          parentPageNumber);
-      parent.insertKey(middleKey, newRightNode.getPageNumber(), tree);
-      if (parent.getPrimaryKeys().indexOf(middleKey) == parent.numPrimaryKeys - 1) {
-        parent.getChildrenPointers().add(newRightNode.getPageNumber());
-      } else {
-        parent.getChildrenPointers().add(parent.getPrimaryKeys().indexOf(middleKey) + 1, newRightNode.getPageNumber());
+  /**
+   * @return the position of a child among the children, -1 if it is not one
+   */
+  public int indexOfChild(int childPageNumber) {
+    for (int i = 0; i < numChildren; i++) {
+      if (childrenPointers[i] == childPageNumber) {
+        return i;
       }
     }
-
-    // Mark the current node and new right node as changed
-    this.setChanged();
-    newRightNode.setChanged();
+    return -1;
   }
 
-  @SuppressWarnings({ "rawtypes", "unchecked" })
-  @Override
-  public void deleteKey(Object primaryKey, BPlusTree tree) throws Exception {
-    int pos = findInsertPosition(primaryKey);
-
-    if (pos < numPrimaryKeys && ((Comparable) primaryKeys.get(pos)).compareTo(primaryKey) == 0) {
-      int rightChildPageNumber = childrenPointers.get(pos + 1);
-      Node rightChild = StorageManager.getStorageManager().getNodePage(tableNumber, rightChildPageNumber);
-
-      rightChild.deleteKey(primaryKey, tree);
-
-      if (rightChild.numPrimaryKeys != 0) {
-        Object successorKey = findSuccessor(rightChild, tree);
-        primaryKeys.set(pos, successorKey);
-      }
-    } else {
-      int childPageNumber = childrenPointers.get(pos);
-      Node childNode = StorageManager.getStorageManager().getNodePage(tableNumber, childPageNumber);
-      childNode.deleteKey(primaryKey, tree);
-      if (childNode.numPrimaryKeys - 1 < tree.getMinKeysForLeafNode(childNode)
-          && pos < this.getChildrenPointers().size() && childNode.numPrimaryKeys != 0) {
-        // child was underfull
-        if (pos > 0) {
-          Object successorKey = findSuccessor(childNode, tree);
-          primaryKeys.set(pos - 1, successorKey);
-        } else {
-          if (childNode.isLeaf()) {
-            LeafNode rightChildNode = tree.getRightSibling((LeafNode) childNode);
-            Object successorKey = findSuccessor(rightChildNode, tree);
-            primaryKeys.set(pos, successorKey);
-
-          } else {
-            InternalNode rightChildNode = tree.getRightInternalSibling((InternalNode) childNode);
-            Object successorKey = findSuccessor(rightChildNode, tree);
-            primaryKeys.set(pos, successorKey);
-          }
-        }
-      }
-    }
+  /**
+   * Finds the child a key belongs under, a key equal to a separator goes to its right
+   *
+   * @return the position of the child
+   */
+  public int findChildPosition(Object primaryKey) {
+    return primaryKeys.search(primaryKey, true);
+  }
 
-    if (numPrimaryKeys < tree.getMinKeysForNode(this) && this.numPrimaryKeys != 0) {
-      handleUnderflow(tree);
+  void addChild(int index, int childPageNumber) {
+    if (numChildren == childrenPointers.length) {
+      childrenPointers = Arrays.copyOf(childrenPointers, childrenPointers.length * 2);
     }
-
-    this.setChanged();
-    this.setPriority();
+    System.arraycopy(childrenPointers, index, childrenPointers, index + 1, numChildren - index);
+    childrenPointers[index] = childPageNumber;
+    numChildren++;
   }
 
-  private Object findSuccessor(Node node, BPlusTree tree) throws Exception {
-    while (!node.isLeaf()) {
-      InternalNode internalNode = (InternalNode) node;
-      int leftmostChildPageNumber = internalNode.getChildrenPointers().get(0);
-      node = StorageManager.getStorageManager().getNodePage(tableNumber, leftmostChildPageNumber);
+  /**
+   * Adds a child after the last one, used when a node is built in key order
+   *
+   * @param primaryKey        The smallest key under the child, not kept for the first child
+   * @param childPageNumber   The page number of the child
+   */
+  public void appendChild(Object primaryKey, int childPageNumber) {
+    if (numChildren > 0) {
+      primaryKeys.add(primaryKey);
     }
-    LeafNode leafNode = (LeafNode) node;
-    return leafNode.getPrimaryKeys().get(0); // The smallest key in the leaf node
+    addChild(numChildren, childPageNumber);
   }
 
-  private void handleUnderflow(BPlusTree tree) throws Exception {
-    InternalNode leftSibling = tree.getLeftInternalSibling(this);
-    InternalNode rightSibling = tree.getRightInternalSibling(this);
+  int removeChild(int index) {
+    int childPageNumber = childrenPointers[index];
+    System.arraycopy(childrenPointers, index + 1, childrenPointers, index, numChildren - index - 1);
+    numChildren--;
+    return childPageNumber;
+  }
 
-    if (leftSibling != null && leftSibling.numPrimaryKeys > tree.getMinKeysForNode(leftSibling)) {
-      redistributeFromLeft(leftSibling);
-    } else if (rightSibling != null && rightSibling.numPrimaryKeys > tree.getMinKeysForNode(rightSibling)) {
-      redistributeFromRight(rightSibling);
-    } else if (leftSibling != null) {
-      mergeWithLeftSibling(leftSibling, tree);
-    } else if (rightSibling != null) {
-      mergeWithRightSibling(rightSibling, tree);
+  /**
+   * Appends the children of another node from a position on
+   */
+  private void appendChildren(InternalNode other, int from) {
+    int count = other.numChildren - from;
+    if (numChildren + count > childrenPointers.length) {
+      childrenPointers = Arrays.copyOf(childrenPointers, Math.max(numChildren + count, childrenPointers.length * 2));
     }
+    System.arraycopy(other.childrenPointers, from, childrenPointers, numChildren, count);
+    numChildren += count;
+  }
 
-    // Special case: if this was the root and it became underfull
-    if (this == tree.getRoot() && numPrimaryKeys == 0) {
-      if (!childrenPointers.isEmpty()) {
-        // If there's only one child left, make it the new root
-        tree.setRoot(StorageManager.getStorageManager().getNodePage(tableNumber, childrenPointers.get(0)));
-        Catalog.getCatalog().getSchema(tableNumber).setRoot(StorageManager.getStorageManager().getNodePage(tableNumber, childrenPointers.get(0)).pageNumber);
-      } else {
-        tree.setRoot(null); // Empty tree
-        Catalog.getCatalog().getSchema(tableNumber).setRoot(1);
-        Catalog.getCatalog().getSchema(tableNumber).setNumIndexPages(0);
-      }
+  /**
+   * Points the children between two positions at this node as their parent
+   */
+  private void adoptChildren(int from, int to) throws Exception {
+    for (int i = from; i < to; i++) {
+      Node child = StorageManager.getStorageManager().getNodePage(tableNumber, childrenPointers[i]);
+      child.setParentPageNumber(this.getPageNumber());
     }
   }
 
-  private void redistributeFromLeft(InternalNode leftSibling) throws Exception {
-    Object borrowedKey = leftSibling.primaryKeys.remove(leftSibling.numPrimaryKeys - 1);
-    InternalNode parent = (InternalNode) StorageManager.getStorageManager().getNodePage(tableNumber, this.getParentPageNumber());
-    Object keyBeingReplaced = parent.getPrimaryKeys().get(parent.numPrimaryKeys - 1); // get the last key in parent
-    parent.getPrimaryKeys().set(parent.numPrimaryKeys - 1, borrowedKey);
-
+  @Override
+  public void insertKey(Object primaryKey, Object value, BPlusTree tree) throws Exception {
+    int pos = findChildPosition(primaryKey);
 
-    this.getPrimaryKeys().add(0, keyBeingReplaced); // bring the parent key down to the child
-    int borrowedPointer = leftSibling.getChildrenPointers().remove(leftSibling.numPrimaryKeys);
-    childrenPointers.add(0, borrowedPointer);
+    int childPageNumber = childrenPointers[pos];
+    Node childNode = StorageManager.getStorageManager().getNodePage(tableNumber, childPageNumber);
 
-    Node node = StorageManager.getStorageManager().getNodePage(tableNumber, borrowedPointer);
-    node.setParentPageNumber(this.getPageNumber());
+    childNode.insertKey(primaryKey, value, tree);
 
-    leftSibling.numPrimaryKeys--;
-    numPrimaryKeys++;
-    leftSibling.setChanged();
+    this.setChanged();
   }
 
-  private void redistributeFromRight(InternalNode rightSibling) throws Exception {
-    Object borrowedKey = rightSibling.primaryKeys.remove(0);
+  /**
+   * Adds a key and the child to its right after the child it was split from,
+   * splitting this node if it overflows
+   *
+   * @param leftChildPageNumber   The page number of the child that was split
+   * @param primaryKey            The first key of the right child
+   * @param rightChildPageNumber  The page number of the new right child
+   */
+  public void insertChild(int leftChildPageNumber, Object primaryKey, int rightChildPageNumber, BPlusTree tree) throws Exception {
+    int pos = indexOfChild(leftChildPageNumber);
+    primaryKeys.insert(pos, primaryKey);
+    addChild(pos + 1, rightChildPageNumber);
+    this.setChanged();
 
-    InternalNode parent = (InternalNode) StorageManager.getStorageManager().getNodePage(tableNumber, this.getParentPageNumber());
-    Object keyBeingReplaced = parent.getPrimaryKeys().get(parent.getChildrenPointers().indexOf(this.getPageNumber())); // Get the key that separates this node from the right sibling
-    parent.getPrimaryKeys().set(parent.getChildrenPointers().indexOf(this.getPageNumber()), borrowedKey);
+    if (getNumKeys() > tree.getMaxKeysPerNode()) {
+      splitInternalNode(tree);
+    }
+  }
 
-    // Bring the parent's key down to the current node
-    this.getPrimaryKeys().add(keyBeingReplaced);
+  private void splitInternalNode(BPlusTree tree) throws Exception {
+    int midIndex = getNumKeys() / 2;
+    InternalNode newRightNode = new InternalNode(tableNumber,
+        Catalog.getCatalog().getIndexSchema(tableNumber).getNumIndexPages() + 1, parentPageNumber);
+    Catalog.getCatalog().getIndexSchema(tableNumber).incrementNumIndexPages();
+    newRightNode.setChanged();
+    StorageManager.getStorageManager().addPageToBuffer(newRightNode);
 
-    int borrowedPointer = rightSibling.getChildrenPointers().remove(0);
-    childrenPointers.add(borrowedPointer);
+    // the middle key moves up to the parent, the keys and children after it move right
+    Object middleKey = primaryKeys.get(midIndex);
+    newRightNode.primaryKeys.addAll(primaryKeys, midIndex + 1, getNumKeys());
+    newRightNode.appendChildren(this, midIndex + 1);
 
-    Node node = StorageManager.getStorageManager().getNodePage(tableNumber, borrowedPointer);
-    node.setParentPageNumber(this.getPageNumber());
+    primaryKeys.truncate(midIndex);
+    numChildren = midIndex + 1;
 
-    rightSibling.numPrimaryKeys--;
-    numPrimaryKeys++;
+    // update parent for new right node child pointers
+    newRightNode.adoptChildren(0, newRightNode.numChildren);
 
-    rightSibling.setChanged();
     this.setChanged();
+    tree.insertInParent(this, newRightNode, middleKey);
   }
 
-  private void mergeWithLeftSibling(InternalNode leftSibling, BPlusTree tree) throws Exception {
-    // Move all keys and pointers from this node into the left sibling
-    leftSibling.getPrimaryKeys().add(findSuccessor(this, tree));
-    leftSibling.numPrimaryKeys ++;
-
-    leftSibling.primaryKeys.addAll(primaryKeys);
-    leftSibling.childrenPointers.addAll(childrenPointers);
-    // update the pointers parent
-    for (int childpageNumber : childrenPointers) {
-      Node child = StorageManager.getStorageManager().getNodePage(tableNumber, childpageNumber);
-      child.setParentPageNumber(leftSibling.getPageNumber());
-    }
-    leftSibling.numPrimaryKeys += numPrimaryKeys;
-
-    // Delete this node from the parent
-    tree.deleteInParent(this);
+  /**
+   * Deletes the key from the child it belongs under, then brings the child back up to
+   * the least number of keys if it fell short. The separators stay as they are, one
+   * whose key is gone still divides the keys of the children on either side of it
+   */
+  @Override
+  public void deleteKey(Object primaryKey, BPlusTree tree) throws Exception {
+    int pos = findChildPosition(primaryKey);
+    Node childNode = StorageManager.getStorageManager().getNodePage(tableNumber, childrenPointers[pos]);
+    childNode.deleteKey(primaryKey, tree);
 
-    InternalNode parent = (InternalNode) StorageManager.getStorageManager().getNodePage(tableNumber, this.getParentPageNumber());
-    if (parent.getChildrenPointers().size() < tree.getMinChildrenPerNode(parent)) {
-      tree.setRoot(leftSibling); // left sibling becomes new root
-      Catalog.getCatalog().getSchema(tableNumber).setRoot(leftSibling.pageNumber);
+    if (childNode.getNumKeys() < tree.getMinKeysPerNode()) {
+      rebalanceChild(pos, childNode, tree);
     }
+  }
 
-    leftSibling.setChanged();
-}
-
-private void mergeWithRightSibling(InternalNode rightSibling, BPlusTree tree) throws Exception {
-    // Move all keys and pointers from the right sibling into this node
-    primaryKeys.add(findSuccessor(rightSibling, tree));
-    numPrimaryKeys++;
-
-    primaryKeys.addAll(rightSibling.primaryKeys);
-    childrenPointers.addAll(rightSibling.childrenPointers);
-    // update the pointers parent
-    for (int childpageNumber : rightSibling.getChildrenPointers()) {
-      Node child = StorageManager.getStorageManager().getNodePage(tableNumber, childpageNumber);
-      child.setParentPageNumber(this.getPageNumber());
+  /**
+   * Borrows a key for a child from a sibling that can spare one, otherwise merges
+   * the child with a sibling and drops the separator between the two
+   */
+  private void rebalanceChild(int pos, Node childNode, BPlusTree tree) throws Exception {
+    StorageManager storageManager = StorageManager.getStorageManager();
+    Node leftSibling = pos > 0 ? storageManager.getNodePage(tableNumber, childrenPointers[pos - 1]) : null;
+    Node rightSibling = pos < numChildren - 1 ? storageManager.getNodePage(tableNumber, childrenPointers[pos + 1]) : null;
+
+    if (leftSibling != null && leftSibling.getNumKeys() > tree.getMinKeysPerNode()) {
+      primaryKeys.set(pos - 1, childNode.borrowFromLeft(leftSibling, primaryKeys.get(pos - 1)));
+    } else if (rightSibling != null && rightSibling.getNumKeys() > tree.getMinKeysPerNode()) {
+      primaryKeys.set(pos, childNode.borrowFromRight(rightSibling, primaryKeys.get(pos)));
+    } else if (leftSibling != null) {
+      leftSibling.mergeRight(childNode, primaryKeys.get(pos - 1));
+      primaryKeys.remove(pos - 1);
+      removeChild(pos);
+    } else if (rightSibling != null) {
+      childNode.mergeRight(rightSibling, primaryKeys.get(pos));
+      primaryKeys.remove(pos);
+      removeChild(pos + 1);
     }
-    numPrimaryKeys += rightSibling.numPrimaryKeys;
+    this.setChanged();
+  }
 
-    // Delete the right sibling from the parent
-    tree.deleteInParent(rightSibling);
+  @Override
+  Object borrowFromLeft(Node leftSibling, Object separator) throws Exception {
+    InternalNode left = (InternalNode) leftSibling;
+    // the separator comes down in front of the keys, the last key of the sibling goes up in its place
+    Object borrowedKey = left.primaryKeys.remove(left.getNumKeys() - 1);
+    primaryKeys.insert(0, separator);
+    addChild(0, left.removeChild(left.numChildren - 1));
+    adoptChildren(0, 1);
+    left.setChanged();
+    this.setChanged();
+    return borrowedKey;
+  }
 
-    InternalNode parent = (InternalNode) StorageManager.getStorageManager().getNodePage(tableNumber, rightSibling.getParentPageNumber());
-    if (parent.getChildrenPointers().size() < tree.getMinChildrenPerNode(parent)) {
-      tree.setRoot(this);
-      Catalog.getCatalog().getSchema(tableNumber).setRoot(this.pageNumber);
-    }
+  @Override
+  Object borrowFromRight(Node rightSibling, Object separator) throws Exception {
+    InternalNode right = (InternalNode) rightSibling;
+    // the separator comes down after the keys, the first key of the sibling goes up in its place
+    Object borrowedKey = right.primaryKeys.remove(0);
+    primaryKeys.add(separator);
+    addChild(numChildren, right.removeChild(0));
+    adoptChildren(numChildren - 1, numChildren);
+    right.setChanged();
+    this.setChanged();
+    return borrowedKey;
+  }
 
+  @Override
+  void mergeRight(Node rightSibling, Object separator) throws Exception {
+    InternalNode right = (InternalNode) rightSibling;
+    int firstMoved = numChildren;
+    primaryKeys.add(separator);
+    primaryKeys.addAll(right.primaryKeys);
+    appendChildren(right, 0);
+    adoptChildren(firstMoved, numChildren);
+    right.primaryKeys.clear(); // remove all keys to indicate dead node
+    right.numChildren = 0;
+    right.setChanged();
     this.setChanged();
-}
+  }
 
   @Override
-  public void readFromHardware(RandomAccessFile tableAccessFile, TableSchema tableSchema) throws Exception {
-    this.numPrimaryKeys = tableAccessFile.readInt();
-    int numOfChildren = tableAccessFile.readInt();
-
-    int primaryIndex = tableSchema.getPrimaryIndex();
-    String primaryKeyDataType = tableSchema.getAttributes().get(primaryIndex).getDataType();
-
-    for (int i = 0; i < numPrimaryKeys; ++i) {
-      if (primaryKeyDataType.equalsIgnoreCase("integer")) {
-        int primaryKey = tableAccessFile.readInt();
-        this.primaryKeys.add(primaryKey);
-      } else if (primaryKeyDataType.equalsIgnoreCase("double")) {
-        double primaryKey = tableAccessFile.readDouble();
-        this.primaryKeys.add(primaryKey);
-      } else if (primaryKeyDataType.equalsIgnoreCase("boolean")) {
-        boolean primaryKey = tableAccessFile.readBoolean();
-        this.primaryKeys.add(primaryKey);
-      } else if (primaryKeyDataType.contains("char") || primaryKeyDataType.contains("varchar")) {
-        String primaryKey = tableAccessFile.readUTF();
-        this.primaryKeys.add(primaryKey);
-      }
-    }
+  public void readFromHardware(ByteBuffer buffer, TableSchema tableSchema) throws Exception {
+    int numPrimaryKeys = buffer.getInt();
+    int numOfChildren = buffer.getInt();
+
+    this.primaryKeys.read(buffer, numPrimaryKeys);
 
+    this.childrenPointers = new int[Math.max(8, numOfChildren)];
     for (int i = 0; i < numOfChildren; ++i) {
-      int childPageNumber = tableAccessFile.readInt();
-      this.childrenPointers.add(childPageNumber);
+      this.childrenPointers[i] = buffer.getInt();
     }
+    this.numChildren = numOfChildren;
   }
 
   @Override
-  public void writeToHardware(RandomAccessFile tableAccessFile) throws Exception {
-    tableAccessFile.writeInt(pageNumber);
-    tableAccessFile.writeBoolean(this.isLeaf);
-    tableAccessFile.writeInt(parentPageNumber);
-    tableAccessFile.writeInt(this.numPrimaryKeys);
-    tableAccessFile.writeInt(this.childrenPointers.size());
-
-    for (Object key : primaryKeys) {
-      if (key instanceof Integer) {
-        tableAccessFile.writeInt((Integer) key);
-      } else if (key instanceof String) {
-        tableAccessFile.writeUTF((String) key);
-      } else if (key instanceof Double) {
-        tableAccessFile.writeDouble((Double) key);
-      } else if (key instanceof Boolean) {
-        tableAccessFile.writeBoolean((Boolean) key);
-      }
-    }
+  public void writeToHardware(ByteBuffer buffer) throws Exception {
+    buffer.putInt(pageNumber);
+    buffer.put((byte) (this.isLeaf ? 1 : 0));
+    buffer.putInt(parentPageNumber);
+    buffer.putInt(getNumKeys());
+    buffer.putInt(this.numChildren);
+
+    primaryKeys.write(buffer);
 
-    for (int childPageNumber : this.childrenPointers) {
-      tableAccessFile.writeInt(childPageNumber);
+    for (int i = 0; i < this.numChildren; ++i) {
+      buffer.putInt(this.childrenPointers[i]);
     }
   }
 }
@@ -1,25 +1,82 @@
 package StorageManager.Objects;
 
-import java.io.RandomAccessFile;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
 
 import StorageManager.StorageManager;
 import StorageManager.TableSchema;
 
 public class LeafNode extends Node {
-  List<Bucket> buckets;
+  // the bucket of each key, its page number in the high half and its record id in the low half
+  private long[] buckets;
   private int nextLeafPageNumber;
 
 
   public LeafNode(int tableNumber, int pageNumber, int parentPageNumber) {
     super(tableNumber, pageNumber, true, parentPageNumber);
-    this.buckets = new ArrayList<>();
+    this.buckets = new long[8];
     this.nextLeafPageNumber = -1;
   }
 
-  public List<Bucket> getBuckets() {
-    return buckets;
+  public Bucket getBucket(int index) {
+    Objects.checkIndex(index, getNumKeys());
+    long bucket = buckets[index];
+    return new Bucket((int) (bucket >>> 32), (int) bucket);
+  }
+
+  public void setBucket(int index, Bucket bucket) {
+    Objects.checkIndex(index, getNumKeys());
+    buckets[index] = pack(bucket);
+  }
+
+  private static long pack(Bucket bucket) {
+    return ((long) bucket.getPageNumber() << 32) | (bucket.getRecordId() & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Adds a key and its bucket at a position
+   */
+  private void insertEntry(int pos, Object primaryKey, long bucket) {
+    int numKeys = getNumKeys();
+    if (numKeys == buckets.length) {
+      buckets = Arrays.copyOf(buckets, buckets.length * 2);
+    }
+    System.arraycopy(buckets, pos, buckets, pos + 1, numKeys - pos);
+    buckets[pos] = bucket;
+    primaryKeys.insert(pos, primaryKey);
+  }
+
+  /**
+   * Adds a key and its bucket after the last one, used when a leaf is built in key order
+   */
+  public void appendEntry(Object primaryKey, Bucket bucket) {
+    insertEntry(getNumKeys(), primaryKey, pack(bucket));
+  }
+
+  /**
+   * Removes the key and the bucket at a position
+   *
+   * @return the packed bucket
+   */
+  private long removeEntry(int pos) {
+    long bucket = buckets[pos];
+    System.arraycopy(buckets, pos + 1, buckets, pos, getNumKeys() - pos - 1);
+    primaryKeys.remove(pos);
+    return bucket;
+  }
+
+  /**
+   * Appends the keys and buckets of another leaf from a position on
+   */
+  private void appendEntries(LeafNode other, int from) {
+    int numKeys = getNumKeys();
+    int count = other.getNumKeys() - from;
+    if (numKeys + count > buckets.length) {
+      buckets = Arrays.copyOf(buckets, Math.max(numKeys + count, buckets.length * 2));
+    }
+    System.arraycopy(other.buckets, from, buckets, numKeys, count);
+    primaryKeys.addAll(other.primaryKeys, from, other.getNumKeys());
   }
 
   public int getNextLeafPageNumber() {
@@ -42,38 +99,25 @@ public class LeafNode extends Node {
   public void insertKey(Object primaryKey, Object value, BPlusTree tree) throws Exception {
     int pos = findInsertPosition(primaryKey);
 
-    primaryKeys.add(pos, primaryKey);
-    buckets.add(pos, (Bucket) value);
-    ++numPrimaryKeys;
+    insertEntry(pos, primaryKey, pack((Bucket) value));
 
-    if (numPrimaryKeys > tree.getMaxKeysPerNode()) {
+    if (getNumKeys() > tree.getMaxKeysPerNode()) {
       splitLeaf(tree);
     }
     this.setChanged();
-    this.setPriority();
   }
 
   private void splitLeaf(BPlusTree tree) throws Exception {
-    int newRightPageNumber = Catalog.getCatalog().getSchema(tableNumber).getNumIndexPages() + 1;
-    Catalog.getCatalog().getSchema(tableNumber).incrementNumIndexPages();
+    int newRightPageNumber = Catalog.getCatalog().getIndexSchema(tableNumber).getNumIndexPages() + 1;
+    Catalog.getCatalog().getIndexSchema(tableNumber).incrementNumIndexPages();
     LeafNode newRightNode = new LeafNode(tableNumber, newRightPageNumber, parentPageNumber);
     newRightNode.setChanged();
     StorageManager.getStorageManager().addPageToBuffer(newRightNode);
 
 
-    int midIndex = numPrimaryKeys / 2;
-    for (int i=midIndex; i < numPrimaryKeys; ++i) {
-      newRightNode.primaryKeys.add(primaryKeys.get(i));
-      newRightNode.buckets.add(buckets.get(i));
-    }
-    newRightNode.numPrimaryKeys = newRightNode.primaryKeys.size();
-
-    for (int i=numPrimaryKeys - 1; i >= midIndex; --i) {
-      primaryKeys.remove(i);
-      buckets.remove(i);
-    }
-
-    numPrimaryKeys = primaryKeys.size();
+    int midIndex = getNumKeys() / 2;
+    newRightNode.appendEntries(this, midIndex);
+    primaryKeys.truncate(midIndex);
 
     newRightNode.setNextLeafPageNumber(this.nextLeafPageNumber);
     this.setNextLeafPageNumber(newRightPageNumber);
@@ -82,134 +126,75 @@ public class LeafNode extends Node {
   }
 
 
-  @SuppressWarnings({ "rawtypes", "unchecked" })
   @Override
   public void deleteKey(Object primaryKey, BPlusTree tree) throws Exception {
     int pos = findInsertPosition(primaryKey);
-    if (pos < numPrimaryKeys && ((Comparable) primaryKeys.get(pos)).compareTo(primaryKey) == 0) {
-      primaryKeys.remove(pos);
-      buckets.remove(pos);
-      --numPrimaryKeys;
-    }
-
-    if (numPrimaryKeys < tree.getMinKeysForLeafNode(this)) {
-      handleUnderflow(tree);
+    if (isKeyAt(pos, primaryKey)) {
+      removeEntry(pos);
+      this.setChanged();
     }
-    this.setChanged();
-    this.setPriority();
-  }
-
-
-  private void handleUnderflow(BPlusTree tree) throws Exception {
-    LeafNode leftSibling = tree.getLeftSibling(this);
-    LeafNode rightSibling = tree.getRightSibling(this);
-
-    if (leftSibling != null && leftSibling.numPrimaryKeys > tree.getMinKeysForLeafNode(leftSibling)) {
-      redistributionFromLeft(leftSibling);
-    } else if (rightSibling != null && rightSibling.numPrimaryKeys > tree.getMinKeysForLeafNode(rightSibling)) {
-      redistributionFromRight(rightSibling);
-    } else if (leftSibling != null) {
-      mergeWithLeftSibling(leftSibling, tree);
-    } else if (rightSibling != null) {
-      mergeWithRightSibling(rightSibling, tree);
-    }
-  }
-
-  private void redistributionFromLeft(LeafNode leftSibling) {
-    primaryKeys.add(0, leftSibling.primaryKeys.remove(leftSibling.numPrimaryKeys - 1));
-    buckets.add(0, leftSibling.buckets.remove(leftSibling.numPrimaryKeys - 1));
-    leftSibling.numPrimaryKeys--;
-    numPrimaryKeys++;
-    leftSibling.setChanged();
   }
 
-  private void redistributionFromRight(LeafNode rightSibling) throws Exception {
-    primaryKeys.add(numPrimaryKeys, rightSibling.primaryKeys.remove(0));
-    buckets.add(numPrimaryKeys, rightSibling.buckets.remove(0));
-    rightSibling.numPrimaryKeys--;
-    numPrimaryKeys++;
-    rightSibling.setChanged();
+  @Override
+  Object borrowFromLeft(Node leftSibling, Object separator) {
+    LeafNode left = (LeafNode) leftSibling;
+    int last = left.getNumKeys() - 1;
+    Object borrowedKey = left.getKey(last);
+    insertEntry(0, borrowedKey, left.removeEntry(last));
+    left.setChanged();
+    this.setChanged();
+    return borrowedKey;
   }
 
-  private void mergeWithLeftSibling(LeafNode leftSibling, BPlusTree tree) throws Exception {
-    for (int i=0; i < numPrimaryKeys; ++i) {
-      leftSibling.primaryKeys.add(primaryKeys.get(i));
-      leftSibling.buckets.add(buckets.get(i));
-    }
-    leftSibling.numPrimaryKeys += numPrimaryKeys;
-    leftSibling.setNextLeafPageNumber(this.nextLeafPageNumber);
-    leftSibling.setChanged();
-    tree.deleteInParent(this);
+  @Override
+  Object borrowFromRight(Node rightSibling, Object separator) {
+    LeafNode right = (LeafNode) rightSibling;
+    insertEntry(getNumKeys(), right.getKey(0), right.removeEntry(0));
+    right.setChanged();
+    this.setChanged();
+    return right.getKey(0);
   }
 
-  private void mergeWithRightSibling(LeafNode rightSibling, BPlusTree tree) throws Exception {
-    for (int i=0; i < rightSibling.numPrimaryKeys; ++i) {
-      primaryKeys.add(rightSibling.primaryKeys.get(i));
-      buckets.add(rightSibling.buckets.get(i));
-    }
-    numPrimaryKeys += rightSibling.numPrimaryKeys;
-    this.setNextLeafPageNumber(rightSibling.getNextLeafPageNumber());
+  @Override
+  void mergeRight(Node rightSibling, Object separator) {
+    LeafNode right = (LeafNode) rightSibling;
+    appendEntries(right, 0);
+    this.setNextLeafPageNumber(right.getNextLeafPageNumber());
+    right.primaryKeys.clear(); // remove all keys to indicate dead node
+    right.setChanged();
     this.setChanged();
-    tree.deleteInParent(rightSibling);
   }
 
-
   @Override
-  public void readFromHardware(RandomAccessFile tableAccessFile, TableSchema tableSchema) throws Exception {
-    this.numPrimaryKeys = tableAccessFile.readInt();
-    int numOfBuckets = tableAccessFile.readInt();
-    this.nextLeafPageNumber = tableAccessFile.readInt();
-    int primaryIndex = tableSchema.getPrimaryIndex();
-    String primaryKeyDataType = tableSchema.getAttributes().get(primaryIndex).getDataType();
-
-    for (int i=0; i < numPrimaryKeys; ++i) {
-      if (primaryKeyDataType.equalsIgnoreCase("integer")) {
-        int primaryKey = tableAccessFile.readInt();
-        this.primaryKeys.add(primaryKey);
-      } else if (primaryKeyDataType.equalsIgnoreCase("double")) {
-        double primaryKey = tableAccessFile.readDouble();
-        this.primaryKeys.add(primaryKey);
-      } else if (primaryKeyDataType.equalsIgnoreCase("boolean")) {
-        boolean primaryKey = tableAccessFile.readBoolean();
-        this.primaryKeys.add(primaryKey);
-      } else if (primaryKeyDataType.contains("char") || primaryKeyDataType.contains("varchar")) {
-        String primaryKey = tableAccessFile.readUTF();
-        this.primaryKeys.add(primaryKey);
-      }
-    }
+  public void readFromHardware(ByteBuffer buffer, TableSchema tableSchema) throws Exception {
+    int numPrimaryKeys = buffer.getInt();
+    int numOfBuckets = buffer.getInt();
+    this.nextLeafPageNumber = buffer.getInt();
+
+    this.primaryKeys.read(buffer, numPrimaryKeys);
 
+    this.buckets = new long[Math.max(8, numOfBuckets)];
     for (int i=0; i < numOfBuckets; ++i) {
-      int pageNumber = tableAccessFile.readInt();
-      int index = tableAccessFile.readInt();
-      Bucket bucket = new Bucket(pageNumber, index);
-      this.buckets.add(bucket);
+      int pageNumber = buffer.getInt();
+      int recordId = buffer.getInt();
+      this.buckets[i] = ((long) pageNumber << 32) | (recordId & 0xFFFFFFFFL);
     }
   }
 
   @Override
-  public void writeToHardware(RandomAccessFile tableAccessFile) throws Exception {
-    tableAccessFile.writeInt(pageNumber);
-    tableAccessFile.writeBoolean(this.isLeaf);
-    tableAccessFile.writeInt(parentPageNumber);
-    tableAccessFile.writeInt(this.numPrimaryKeys);
-    tableAccessFile.writeInt(this.buckets.size());
-    tableAccessFile.writeInt(this.nextLeafPageNumber);
-
-    for (Object key : primaryKeys) {
-      if (key instanceof Integer) {
-        tableAccessFile.writeInt((Integer) key);
-      } else if (key instanceof String) {
-          tableAccessFile.writeUTF((String) key);
-      } else if (key instanceof Double) {
-          tableAccessFile.writeDouble((Double) key);
-      } else if (key instanceof Boolean) {
-          tableAccessFile.writeBoolean((Boolean) key);
-      }
-    }
-
-    for (Bucket bucket : buckets) {
-      tableAccessFile.writeInt(bucket.getPageNumber());
-      tableAccessFile.writeInt(bucket.getIndex());
+  public void writeToHardware(ByteBuffer buffer) throws Exception {
+    buffer.putInt(pageNumber);
+    buffer.put((byte) (this.isLeaf ? 1 : 0));
+    buffer.putInt(parentPageNumber);
+    buffer.putInt(getNumKeys());
+    buffer.putInt(getNumKeys());
+    buffer.putInt(this.nextLeafPageNumber);
+
+    primaryKeys.write(buffer);
+
+    for (int i=0; i < getNumKeys(); ++i) {
+      buffer.putInt((int) (buckets[i] >>> 32));
+      buffer.putInt((int) buckets[i]);
     }
   }
 }
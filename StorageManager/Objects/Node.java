@@ -1,19 +1,14 @@
 package StorageManager.Objects;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public abstract class Node extends BufferPage {
   protected boolean isLeaf;
-  protected int numPrimaryKeys;
-  protected List<Object> primaryKeys;
+  protected NodeKeys primaryKeys;
   protected int parentPageNumber;
 
   public Node(int tableNumber, int pageNumber, boolean isLeaf, int parentPageNumber) {
       super(tableNumber, pageNumber);
       this.isLeaf = isLeaf;
-      this.numPrimaryKeys = 0;
-      this.primaryKeys = new ArrayList<>();
+      this.primaryKeys = Catalog.getCatalog().getIndexSchema(tableNumber).createKeys();
       this.changed = false;
       this.parentPageNumber = parentPageNumber;
   }
@@ -23,32 +18,64 @@ public abstract class Node extends BufferPage {
   }
 
   public int getNumKeys() {
-      return numPrimaryKeys;
+      return primaryKeys.size();
   }
 
-  public List<Object> getPrimaryKeys() {
+  public NodeKeys getPrimaryKeys() {
     return primaryKeys;
   }
 
+  public Object getKey(int index) {
+    return primaryKeys.get(index);
+  }
+
   public int getParentPageNumber() {
     return parentPageNumber;
   }
 
   public void setParentPageNumber(int parentPageNumber) {
     this.parentPageNumber = parentPageNumber;
+    this.setChanged();
   }
 
   public abstract void insertKey(Object primaryKey, Object value, BPlusTree tree) throws Exception;
   public abstract void deleteKey(Object primaryKey, BPlusTree tree) throws Exception;
 
+  /**
+   * Moves the last key of the sibling to the left of this node to the front of this node
+   *
+   * @param separator The key of the parent separating the two
+   * @return the key that separates the two afterwards
+   */
+  abstract Object borrowFromLeft(Node leftSibling, Object separator) throws Exception;
 
-  @SuppressWarnings({ "rawtypes", "unchecked" })
-public int findInsertPosition(Object primaryKey) {
-    int i = 0;
-    while (i < numPrimaryKeys && ((Comparable) primaryKeys.get(i)).compareTo(primaryKey) < 0) {
-        i++;
-    }
-    return i;
-}
-}
+  /**
+   * Moves the first key of the sibling to the right of this node to the end of this node
+   *
+   * @param separator The key of the parent separating the two
+   * @return the key that separates the two afterwards
+   */
+  abstract Object borrowFromRight(Node rightSibling, Object separator) throws Exception;
 
+  /**
+   * Moves the keys of the sibling to the right of this node into this node,
+   * the parent then drops the separator and the sibling
+   *
+   * @param separator The key of the parent separating the two
+   */
+  abstract void mergeRight(Node rightSibling, Object separator) throws Exception;
+
+  /**
+   * @return the index of the first key greater than or equal to the given one
+   */
+  public int findInsertPosition(Object primaryKey) {
+    return primaryKeys.search(primaryKey, false);
+  }
+
+  /**
+   * @return whether the key at the position is the given one
+   */
+  public boolean isKeyAt(int pos, Object primaryKey) {
+    return pos < primaryKeys.size() && primaryKeys.compare(pos, primaryKey) == 0;
+  }
+}
@@ -0,0 +1,475 @@
+package StorageManager.Objects;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import Parser.Type;
+import StorageManager.Objects.Utility.ModifiedUtf8;
+
+/**
+ * The keys of a B+ tree node in ascending order, searched with a binary search.
+ * Integer and double keys are kept in primitive arrays so a search neither
+ * unboxes nor casts them one by one, string and boolean keys are kept as objects.
+ * Keys are written to hardware one after the other in the encoding of their type.
+ * The keys of a secondary index pair a value with a primary key, see IndexKey.
+ */
+public abstract class NodeKeys {
+  protected int size;
+
+  /**
+   * @param type  The type of the primary key of the table
+   * @return empty keys for the type
+   */
+  public static NodeKeys forType(Type type) {
+    switch (type) {
+      case INTEGER:
+        return new IntKeys();
+      case DOUBLE:
+        return new DoubleKeys();
+      case BOOLEAN:
+      case STRING:
+        return new ObjectKeys(type);
+      default:
+        throw new IllegalArgumentException("Unsupported key type: " + type);
+    }
+  }
+
+  /**
+   * @param valueType       The type of the indexed attribute
+   * @param primaryKeyType  The type of the primary key of the table
+   * @return empty keys for a secondary index
+   */
+  public static NodeKeys forIndex(Type valueType, Type primaryKeyType) {
+    return new IndexKeys(forType(valueType), forType(primaryKeyType));
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public abstract Object get(int index);
+
+  public abstract void set(int index, Object key);
+
+  /**
+   * @return <0, 0 or >0 as the key at the index is less than, equal to or greater than the given key
+   */
+  public abstract int compare(int index, Object key);
+
+  /**
+   * Finds where a key goes among the keys
+   *
+   * @param key         The key to look for
+   * @param afterEqual  Whether a key equal to it counts as less than it
+   * @return the index of the first key greater than or equal to the given one,
+   *         or of the first key greater than it if afterEqual is set
+   */
+  public int search(Object key, boolean afterEqual) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      int cmp = compare(mid, key);
+      if (cmp < 0 || (cmp == 0 && afterEqual)) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  public abstract void insert(int index, Object key);
+
+  public void add(Object key) {
+    insert(size, key);
+  }
+
+  public abstract Object remove(int index);
+
+  /**
+   * Appends a range of the keys of another node of the same table
+   *
+   * @param other The keys to copy from
+   * @param from  The first index to copy, inclusive
+   * @param to    The last index to copy, exclusive
+   */
+  public abstract void addAll(NodeKeys other, int from, int to);
+
+  public void addAll(NodeKeys other) {
+    addAll(other, 0, other.size);
+  }
+
+  /**
+   * Keeps only the first keys, dropping the rest
+   */
+  public abstract void truncate(int newSize);
+
+  public void clear() {
+    truncate(0);
+  }
+
+  public abstract void write(ByteBuffer buffer) throws IOException;
+
+  public abstract void read(ByteBuffer buffer, int count) throws IOException;
+
+  private static int grow(int length) {
+    return Math.max(8, length * 2);
+  }
+
+  private static final class IntKeys extends NodeKeys {
+    private int[] keys = new int[8];
+
+    @Override
+    public Object get(int index) {
+      return keys[index];
+    }
+
+    @Override
+    public void set(int index, Object key) {
+      keys[index] = (Integer) key;
+    }
+
+    @Override
+    public int compare(int index, Object key) {
+      return Integer.compare(keys[index], (Integer) key);
+    }
+
+    @Override
+    public int search(Object key, boolean afterEqual) {
+      int value = (Integer) key;
+      int low = 0;
+      int high = size;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (keys[mid] < value || (keys[mid] == value && afterEqual)) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    @Override
+    public void insert(int index, Object key) {
+      if (size == keys.length) {
+        keys = Arrays.copyOf(keys, grow(keys.length));
+      }
+      System.arraycopy(keys, index, keys, index + 1, size - index);
+      keys[index] = (Integer) key;
+      size++;
+    }
+
+    @Override
+    public Object remove(int index) {
+      int key = keys[index];
+      System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+      size--;
+      return key;
+    }
+
+    @Override
+    public void addAll(NodeKeys other, int from, int to) {
+      int count = to - from;
+      if (size + count > keys.length) {
+        keys = Arrays.copyOf(keys, Math.max(size + count, grow(keys.length)));
+      }
+      System.arraycopy(((IntKeys) other).keys, from, keys, size, count);
+      size += count;
+    }
+
+    @Override
+    public void truncate(int newSize) {
+      size = newSize;
+    }
+
+    @Override
+    public void write(ByteBuffer buffer) {
+      for (int i = 0; i < size; i++) {
+        buffer.putInt(keys[i]);
+      }
+    }
+
+    @Override
+    public void read(ByteBuffer buffer, int count) {
+      keys = new int[Math.max(8, count)];
+      for (int i = 0; i < count; i++) {
+        keys[i] = buffer.getInt();
+      }
+      size = count;
+    }
+  }
+
+  private static final class DoubleKeys extends NodeKeys {
+    private double[] keys = new double[8];
+
+    @Override
+    public Object get(int index) {
+      return keys[index];
+    }
+
+    @Override
+    public void set(int index, Object key) {
+      keys[index] = (Double) key;
+    }
+
+    @Override
+    public int compare(int index, Object key) {
+      return Double.compare(keys[index], (Double) key);
+    }
+
+    @Override
+    public int search(Object key, boolean afterEqual) {
+      double value = (Double) key;
+      int low = 0;
+      int high = size;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        int cmp = Double.compare(keys[mid], value);
+        if (cmp < 0 || (cmp == 0 && afterEqual)) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    @Override
+    public void insert(int index, Object key) {
+      if (size == keys.length) {
+        keys = Arrays.copyOf(keys, grow(keys.length));
+      }
+      System.arraycopy(keys, index, keys, index + 1, size - index);
+      keys[index] = (Double) key;
+      size++;
+    }
+
+    @Override
+    public Object remove(int index) {
+      double key = keys[index];
+      System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+      size--;
+      return key;
+    }
+
+    @Override
+    public void addAll(NodeKeys other, int from, int to) {
+      int count = to - from;
+      if (size + count > keys.length) {
+        keys = Arrays.copyOf(keys, Math.max(size + count, grow(keys.length)));
+      }
+      System.arraycopy(((DoubleKeys) other).keys, from, keys, size, count);
+      size += count;
+    }
+
+    @Override
+    public void truncate(int newSize) {
+      size = newSize;
+    }
+
+    @Override
+    public void write(ByteBuffer buffer) {
+      for (int i = 0; i < size; i++) {
+        buffer.putDouble(keys[i]);
+      }
+    }
+
+    @Override
+    public void read(ByteBuffer buffer, int count) {
+      keys = new double[Math.max(8, count)];
+      for (int i = 0; i < count; i++) {
+        keys[i] = buffer.getDouble();
+      }
+      size = count;
+    }
+  }
+
+  /**
+   * String and boolean keys, compared in their natural order
+   */
+  private static final class ObjectKeys extends NodeKeys {
+    private final Type type;
+    private Comparable<Object>[] keys = newArray(8);
+
+    ObjectKeys(Type type) {
+      this.type = type;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Comparable<Object>[] newArray(int length) {
+      return new Comparable[length];
+    }
+
+    @Override
+    public Object get(int index) {
+      return keys[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void set(int index, Object key) {
+      keys[index] = (Comparable<Object>) key;
+    }
+
+    @Override
+    public int compare(int index, Object key) {
+      return keys[index].compareTo(key);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void insert(int index, Object key) {
+      if (size == keys.length) {
+        keys = Arrays.copyOf(keys, grow(keys.length));
+      }
+      System.arraycopy(keys, index, keys, index + 1, size - index);
+      keys[index] = (Comparable<Object>) key;
+      size++;
+    }
+
+    @Override
+    public Object remove(int index) {
+      Object key = keys[index];
+      System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+      keys[--size] = null;
+      return key;
+    }
+
+    @Override
+    public void addAll(NodeKeys other, int from, int to) {
+      int count = to - from;
+      if (size + count > keys.length) {
+        keys = Arrays.copyOf(keys, Math.max(size + count, grow(keys.length)));
+      }
+      System.arraycopy(((ObjectKeys) other).keys, from, keys, size, count);
+      size += count;
+    }
+
+    @Override
+    public void truncate(int newSize) {
+      Arrays.fill(keys, newSize, size, null);
+      size = newSize;
+    }
+
+    @Override
+    public void write(ByteBuffer buffer) throws IOException {
+      for (int i = 0; i < size; i++) {
+        Object key = keys[i];
+        if (type == Type.BOOLEAN) {
+          buffer.put((byte) ((Boolean) key ? 1 : 0));
+        } else {
+          ModifiedUtf8.put(buffer, (String) key);
+        }
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void read(ByteBuffer buffer, int count) throws IOException {
+      keys = newArray(Math.max(8, count));
+      for (int i = 0; i < count; i++) {
+        Object key;
+        if (type == Type.BOOLEAN) {
+          key = buffer.get() != 0;
+        } else {
+          key = ModifiedUtf8.get(buffer);
+        }
+        keys[i] = (Comparable<Object>) key;
+      }
+      size = count;
+    }
+  }
+
+  /**
+   * Keys of a secondary index, the values and the primary keys are kept in keys
+   * of their own types side by side. All the values are written first, then all
+   * the primary keys.
+   */
+  private static final class IndexKeys extends NodeKeys {
+    private final NodeKeys values;
+    private final NodeKeys primaryKeys;
+
+    IndexKeys(NodeKeys values, NodeKeys primaryKeys) {
+      this.values = values;
+      this.primaryKeys = primaryKeys;
+    }
+
+    @Override
+    public Object get(int index) {
+      return new IndexKey(values.get(index), primaryKeys.get(index));
+    }
+
+    @Override
+    public void set(int index, Object key) {
+      IndexKey indexKey = (IndexKey) key;
+      values.set(index, indexKey.getValue());
+      primaryKeys.set(index, indexKey.getPrimaryKey());
+    }
+
+    @Override
+    public int compare(int index, Object key) {
+      IndexKey indexKey = (IndexKey) key;
+      int cmp = values.compare(index, indexKey.getValue());
+      if (cmp != 0) {
+        return cmp;
+      }
+      if (indexKey.getPrimaryKey() == null) {
+        // the key of a bare value is before every entry of the value
+        return 1;
+      }
+      return primaryKeys.compare(index, indexKey.getPrimaryKey());
+    }
+
+    @Override
+    public void insert(int index, Object key) {
+      IndexKey indexKey = (IndexKey) key;
+      values.insert(index, indexKey.getValue());
+      primaryKeys.insert(index, indexKey.getPrimaryKey());
+      size++;
+    }
+
+    @Override
+    public Object remove(int index) {
+      Object key = get(index);
+      values.remove(index);
+      primaryKeys.remove(index);
+      size--;
+      return key;
+    }
+
+    @Override
+    public void addAll(NodeKeys other, int from, int to) {
+      IndexKeys otherKeys = (IndexKeys) other;
+      values.addAll(otherKeys.values, from, to);
+      primaryKeys.addAll(otherKeys.primaryKeys, from, to);
+      size += to - from;
+    }
+
+    @Override
+    public void truncate(int newSize) {
+      values.truncate(newSize);
+      primaryKeys.truncate(newSize);
+      size = newSize;
+    }
+
+    @Override
+    public void write(ByteBuffer buffer) throws IOException {
+      values.write(buffer);
+      primaryKeys.write(buffer);
+    }
+
+    @Override
+    public void read(ByteBuffer buffer, int count) throws IOException {
+      values.read(buffer, count);
+      primaryKeys.read(buffer, count);
+      size = count;
+    }
+  }
+}
@@ -1,120 +1,266 @@
 package StorageManager.Objects;
 
-import java.io.RandomAccessFile;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
 
 import StorageManager.StorageManager;
 import StorageManager.TableSchema;
 import StorageManager.Objects.MessagePrinter.MessageType;
 
+/**
+ * A page of a table laid out as slots: after the header comes a slot directory
+ * holding the offset, length and record id of each record, in primary key order,
+ * and the records themselves are kept as encoded tuples packed against the end of the page.
+ *
+ * A record id names a record for as long as it stays in the page, while its index
+ * changes as records before it come and go. Index buckets hold record ids, so only a
+ * record that moves to another page needs its bucket changed. The id of a removed
+ * record is given to the next record inserted.
+ *
+ * Records are handed out as views of their tuples that decode columns on demand.
+ * Tuple bytes are never overwritten while the page holds them, compacting the
+ * page copies the live tuples into a new array, so a view stays valid after
+ * its record is moved or deleted.
+ */
 public class Page extends BufferPage {
+    // numRecords, pageNumber and freeBytes
+    private static final int HEADER_SIZE = Integer.BYTES * 3;
+    // a slot holds the offset, the length and the record id of a record as unsigned shorts
+    private static final int SLOT_SIZE = Short.BYTES * 3;
+    public static final int MAX_PAGE_SIZE = 0xFFFF;
+
     private int numRecords;
-    private List<Record> records;
+    private int[] slotOffsets;
+    private int[] slotLengths;
+    private int[] recordIds;
+    // the index of each record id, -1 for an id that is not in use
+    private int[] recordIndexes;
+    private Record[] views;
+    private byte[] data;
+    private ByteBuffer dataBuffer;
+    private int recordStart;
+    // kept up to date with every change, so checking for room does not walk the records
+    private int freeBytes;
+    private int pageSize;
+    private List<AttributeSchema> attributes;
 
     public Page(int numRecords, int tableNumber, int pageNumber) {
+        this(numRecords, tableNumber, pageNumber, Catalog.getCatalog().getPageSize());
+    }
+
+    /**
+     * @param pageSize The size of the page, for pages not kept in a table file
+     *                 such as those a query spills, which may be larger
+     */
+    public Page(int numRecords, int tableNumber, int pageNumber, int pageSize) {
         super(tableNumber, pageNumber);
         this.numRecords = numRecords;
         this.changed = false;
-        this.records = new ArrayList<>();
+        this.pageSize = pageSize;
+        this.slotOffsets = new int[Math.max(numRecords, 8)];
+        this.slotLengths = new int[this.slotOffsets.length];
+        this.recordIds = new int[this.slotOffsets.length];
+        this.recordIndexes = new int[this.slotOffsets.length];
+        Arrays.fill(this.recordIndexes, -1);
+        this.views = new Record[this.slotOffsets.length];
+        this.data = new byte[this.pageSize];
+        this.dataBuffer = ByteBuffer.wrap(this.data);
+        this.recordStart = this.pageSize;
+        this.freeBytes = this.pageSize - HEADER_SIZE;
     }
 
-    public Page() {
-        super(0, 0);
+    /**
+     * @param pageSize  The size of a page
+     * @return the size of the largest record that fits in an empty page
+     */
+    public static int getMaxRecordSize(int pageSize) {
+        return pageSize - HEADER_SIZE - SLOT_SIZE;
+    }
+
+    /**
+     * @param record    The record to add
+     * @return the number of free bytes a page needs to take the record
+     */
+    public static int getSpaceNeeded(Record record) {
+        return record.computeSize() + SLOT_SIZE;
     }
 
     public int getNumRecords() {
         return numRecords;
     }
 
-    public void setNumRecords() {
-        this.numRecords = this.records.size();
+    public int getFreeBytes() {
+        return freeBytes;
     }
 
+    /**
+     * Gets a record of the page, a view that decodes its columns when they are read
+     *
+     * @param index The slot of the record
+     * @return The record
+     */
+    public Record getRecord(int index) {
+        if (index < 0 || index >= this.numRecords) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        Record view = this.views[index];
+        if (view == null) {
+            if (this.attributes == null) {
+                this.attributes = Catalog.getCatalog().getSchema(this.tableNumber).getAttributes();
+            }
+            view = new Record(this.dataBuffer.slice(this.slotOffsets[index], this.slotLengths[index]),
+                    this.attributes);
+            this.views[index] = view;
+        }
+        return view;
+    }
+
+    /**
+     * Gets the records of the page in primary key order
+     * The list is read only, use addNewRecord and deleteRecord to change the page
+     *
+     * @return The records
+     */
     public List<Record> getRecords() {
-        return records;
+        return new AbstractList<Record>() {
+            @Override
+            public Record get(int index) {
+                return getRecord(index);
+            }
+
+            @Override
+            public int size() {
+                return numRecords;
+            }
+        };
     }
 
-    public void setRecords(List<Record> records) {
-        this.records = records;
-        this.setNumRecords();
+    /**
+     * @param index The index of the record
+     * @return the record id of the record, it stays the same while the record is in this page
+     */
+    public int getRecordId(int index) {
+        if (index < 0 || index >= this.numRecords) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return this.recordIds[index];
+    }
+
+    /**
+     * @param recordId  The record id of a record in this page
+     * @return the current index of the record, -1 if no record has the id
+     */
+    public int getRecordIndex(int recordId) {
+        if (recordId < 0 || recordId >= this.recordIndexes.length) {
+            return -1;
+        }
+        return this.recordIndexes[recordId];
     }
 
     public int getRecordLocation(Record record, int primaryKeyIndex) throws Exception {
-        for (int i = 0; i < this.records.size(); i++) {
-            if (record.compareTo(this.records.get(i), primaryKeyIndex) == 0) {
-                return i;
-            }
+        int index = this.findRecord(record.getValue(primaryKeyIndex), primaryKeyIndex);
+        if (index >= 0) {
+            return index;
         }
         // error 404
         MessagePrinter.printMessage(MessageType.ERROR, "Unable to find record in page: getRecordLocation");
         return -1;
     }
 
+    /**
+     * Binary searches the page for a primary key, records are kept in primary key order
+     *
+     * @param primaryKey        The primary key to look for
+     * @param primaryKeyIndex   The index of the primary key in a record
+     * @return  The index of the record with the key if there is one,
+     *          otherwise (-(insertion point) - 1) as in Arrays.binarySearch
+     */
+    public int findRecord(Object primaryKey, int primaryKeyIndex) {
+        int low = 0;
+        int high = this.numRecords - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int comparison = this.getRecord(mid).compareTo(primaryKey, primaryKeyIndex);
+            if (comparison < 0) {
+                low = mid + 1;
+            } else if (comparison > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Binary searches for where a record goes, after every record that does not sort after it
+     *
+     * @param record        The record to be inserted
+     * @param comparator    The record order of the table
+     * @return The index to insert the record at
+     */
+    private int findInsertPosition(Record record, Comparator<Record> comparator) {
+        int low = 0;
+        int high = this.numRecords;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (comparator.compare(this.getRecord(mid), record) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
     /**
      * Adds a record to the page in the correct order
      *
-     * @param record    The record to be inserted
+     * @param record        The record to be inserted
+     * @param recordMoved   Whether the record is already in the index and has moved here
+     *                      from another page, its bucket is then pointed at this page
      *
      * @return          true: insert success
      *                  false: page is full
      * @throws Exception
      */
-    public boolean addNewRecord(Record record, boolean includeInsertedRecordInBucketUpdate) throws Exception {
+    public boolean addNewRecord(Record record, boolean recordMoved) throws Exception {
         Catalog catalog = Catalog.getCatalog();
         // check if record can fit in this page.
-        if ((catalog.getPageSize() - this.computeSize()) < record.computeSize()) {
+        if (!this.canFit(record)) {
             return false;
         } else {
-            Map<Integer, TableSchema> schemas = catalog.getSchemas();
-            TableSchema schema = schemas.get(this.tableNumber);
-            int primaryIndex = schema.getPrimaryIndex();
-            String primaryType = schema.getAttributes().get(primaryIndex).getDataType();
-            Comparator<Record> comparator = recordComparator(primaryIndex, primaryType);
-            // Add record
-            this.records.add(record);
-            // sort
-            this.records.sort(comparator);
-
-            this.setNumRecords();
-            if (Catalog.getCatalog().isIndexingOn()) {
-                if (includeInsertedRecordInBucketUpdate) {
-                    updateBplusTreeBuckets(this.records.indexOf(record));
-                } else {
-                    updateBplusTreeBuckets(this.records.indexOf(record) + 1);
-                }
+            TableSchema schema = catalog.getSchema(this.tableNumber);
+            int index = this.findInsertPosition(record, schema.getRecordComparator());
+            this.insertSlot(index, record);
+
+            if (recordMoved && catalog.isIndexingOn()) {
+                this.updateBucket(index);
             }
             this.changed = true;
-            this.setPriority();
             return true;
         }
     }
 
     /**
-     * Adds a record to the page at a specific index
-     * @param record    The record to be inserted
-     * @param index     The index to insert at
-     * @return          true: insert success
-     *                  false: page is full
+     * Adds a record after the others rather than in primary key order, for pages
+     * that are not part of a table such as those a query spills
+     *
+     * @param record    The record to add
+     *
+     * @return          false if the record does not fit in the page
      * @throws Exception
      */
-    public boolean addNewRecord(Record record, int index) throws Exception {
-        Catalog catalog = Catalog.getCatalog();
-        // check if record can fit in this page.
-        if ((catalog.getPageSize() - this.computeSize()) < record.computeSize()) {
+    public boolean appendRecord(Record record) throws Exception {
+        if (!this.canFit(record)) {
             return false;
-        } else {
-            this.records.add(index, record);
-            this.setNumRecords();
-            if (Catalog.getCatalog().isIndexingOn()) {
-                updateBplusTreeBuckets(index + 1);
-            }
-            this.changed = true;
-            this.setPriority();
-            return true;
         }
+        this.insertSlot(this.numRecords, record);
+        this.changed = true;
+        return true;
     }
 
     /**
@@ -126,99 +272,186 @@ public class Page extends BufferPage {
      * @throws Exception
      */
     public Record deleteRecord(int index) throws Exception {
-        Record removed = this.records.remove(index);
+        Record removed = this.getRecord(index);
+        this.freeBytes += this.slotLengths[index] + SLOT_SIZE;
+        this.removeSlots(index, index + 1);
         this.changed = true;
-        this.setPriority();
-        this.setNumRecords();
-        if (Catalog.getCatalog().isIndexingOn()) {
-            updateBplusTreeBuckets(index);
-        }
         return removed;
     }
 
-
     /**
-     * returns the number of bytes of space is left in this page
+     * Removes every record from an index to the end of the page,
+     * used when a split has moved them to another page and their buckets with them
      *
-     * @return  int - number of bytes of space left
-     * @throws Exception
+     * @param index The index of the first record to remove
      */
-    public int computeSize() {
-        // Page: numRecord, PageNumber, records..
-        int size = Integer.BYTES * 2;
-        for (Record record: this.records) {
-            size += record.computeSize();
+    public void removeRecordsFrom(int index) {
+        for (int i = index; i < this.numRecords; i++) {
+            this.freeBytes += this.slotLengths[i] + SLOT_SIZE;
         }
-        return size;
+        this.removeSlots(index, this.numRecords);
+        this.changed = true;
     }
 
-    @Override
-    public void writeToHardware(RandomAccessFile tableAccessFile) throws Exception {
-        tableAccessFile.writeInt(this.numRecords);
-        tableAccessFile.writeInt(this.pageNumber);
-        for (Record record: this.records) {
-           record.writeToHardware(tableAccessFile);
+    public boolean canFit(Record record) {
+        return this.freeBytes >= getSpaceNeeded(record);
+    }
+
+    /**
+     * Encodes a record below the other tuples and gives it a slot
+     * The caller has checked that the record fits
+     */
+    private void insertSlot(int index, Record record) throws Exception {
+        int length = record.computeSize();
+        if (this.recordStart - (HEADER_SIZE + SLOT_SIZE * (this.numRecords + 1)) < length) {
+            this.compact();
         }
+        int offset = this.recordStart - length;
+        record.writeToHardware(ByteBuffer.wrap(this.data, offset, length));
+
+        if (this.numRecords == this.slotOffsets.length) {
+            this.growSlots(this.slotOffsets.length * 2);
+        }
+        int moved = this.numRecords - index;
+        System.arraycopy(this.slotOffsets, index, this.slotOffsets, index + 1, moved);
+        System.arraycopy(this.slotLengths, index, this.slotLengths, index + 1, moved);
+        System.arraycopy(this.recordIds, index, this.recordIds, index + 1, moved);
+        System.arraycopy(this.views, index, this.views, index + 1, moved);
+        this.slotOffsets[index] = offset;
+        this.slotLengths[index] = length;
+        this.recordIds[index] = this.freeRecordId();
+        this.views[index] = null;
+        this.numRecords++;
+        this.recordStart = offset;
+        this.freeBytes -= length + SLOT_SIZE;
+        this.updateRecordIndexes(index);
     }
 
-    @Override
-    public void readFromHardware(RandomAccessFile tableAccessFile, TableSchema tableSchema) throws Exception {
-        for (int i=0; i < numRecords; ++i) {
-            Record record = new Record(new ArrayList<>());
-            record.readFromHardware(tableAccessFile, tableSchema);
-            this.records.add(record);
+    private void removeSlots(int from, int to) {
+        for (int i = from; i < to; i++) {
+            this.recordIndexes[this.recordIds[i]] = -1;
         }
+        int moved = this.numRecords - to;
+        System.arraycopy(this.slotOffsets, to, this.slotOffsets, from, moved);
+        System.arraycopy(this.slotLengths, to, this.slotLengths, from, moved);
+        System.arraycopy(this.recordIds, to, this.recordIds, from, moved);
+        System.arraycopy(this.views, to, this.views, from, moved);
+        this.numRecords -= to - from;
+        Arrays.fill(this.views, this.numRecords, this.numRecords + (to - from), null);
+        this.updateRecordIndexes(from);
+    }
+
+    private void growSlots(int capacity) {
+        this.slotOffsets = Arrays.copyOf(this.slotOffsets, capacity);
+        this.slotLengths = Arrays.copyOf(this.slotLengths, capacity);
+        this.recordIds = Arrays.copyOf(this.recordIds, capacity);
+        this.views = Arrays.copyOf(this.views, capacity);
     }
 
+    /**
+     * Gets the lowest record id not in use, one of 0 to numRecords always is
+     */
+    private int freeRecordId() {
+        if (this.recordIndexes.length <= this.numRecords) {
+            int length = this.recordIndexes.length;
+            this.recordIndexes = Arrays.copyOf(this.recordIndexes, Math.max(length * 2, this.numRecords + 1));
+            Arrays.fill(this.recordIndexes, length, this.recordIndexes.length, -1);
+        }
+        int recordId = 0;
+        while (this.recordIndexes[recordId] != -1) {
+            recordId++;
+        }
+        return recordId;
+    }
 
-    public void updateBplusTreeBuckets(int startingRecordIndex) throws Exception {
-        TableSchema tableSchema = Catalog.getCatalog().getSchema(tableNumber);
-        int primaryIndex = tableSchema.getPrimaryIndex();
-        for (int i=startingRecordIndex; i < this.records.size(); ++i) {
-            Record record = this.records.get(i);
-            Object primaryKey = record.getValues().get(primaryIndex);
-            Bucket bucket = new Bucket(this.pageNumber, this.records.indexOf(record));
-            Node root = StorageManager.getStorageManager().getNodePage(this.tableNumber, tableSchema.getRootNumber());
-            BPlusTree bPlusTree = new BPlusTree(tableSchema, root);
+    /**
+     * Records the new index of every record from an index on, after they have shifted
+     */
+    private void updateRecordIndexes(int from) {
+        for (int i = from; i < this.numRecords; i++) {
+            this.recordIndexes[this.recordIds[i]] = i;
+        }
+    }
 
-            bPlusTree.update(primaryKey, primaryKey, bucket);
+    /**
+     * Packs the live tuples against the end of a new array,
+     * the old array is left as it is for the views that still use it
+     */
+    private void compact() {
+        byte[] compacted = new byte[this.pageSize];
+        int offset = this.pageSize;
+        for (int i = 0; i < this.numRecords; i++) {
+            offset -= this.slotLengths[i];
+            System.arraycopy(this.data, this.slotOffsets[i], compacted, offset, this.slotLengths[i]);
+            this.slotOffsets[i] = offset;
         }
+        this.data = compacted;
+        this.dataBuffer = ByteBuffer.wrap(this.data);
+        this.recordStart = offset;
     }
 
     /**
-     * Creates a comparator to compare records based on the specified primary key index and data type.
+     * returns the number of bytes of space used in this page
      *
-     * @param primaryKeyIndex The index of the primary key in each record.
-     * @param dataType        The data type to determine the comparison method. Supported types are "integer", "double",
-     *                        "boolean", "char(x)", and "varchar(x)" where x represents the length.
-     * @return A comparator for comparing records based on the specified primary key index and data type.
-     * @throws IllegalArgumentException If an unsupported data type is provided.
-     */
-    private Comparator<Record> recordComparator(int primaryKeyIndex, String dataType) {
-        return (record1, record2) -> {
-            Object obj1 = record1.getValues().get(primaryKeyIndex);
-            Object obj2 = record2.getValues().get(primaryKeyIndex);
-
-            if (dataType.equalsIgnoreCase("integer")) {
-                Integer int1 = (Integer) obj1;
-                Integer int2 = (Integer) obj2;
-                return int1.compareTo(int2);
-            } else if (dataType.equalsIgnoreCase("double")) {
-                Double double1 = (Double) obj1;
-                Double double2 = (Double) obj2;
-                return double1.compareTo(double2);
-            } else if (dataType.equalsIgnoreCase("boolean")) {
-                Boolean bool1 = (Boolean) obj1;
-                Boolean bool2 = (Boolean) obj2;
-                return Boolean.compare(bool1, bool2);
-            } else if (dataType.contains("char") || dataType.contains("varchar")) {
-                String str1 = obj1.toString();
-                String str2 = obj2.toString();
-                return str1.compareTo(str2);
-            } else {
-                throw new IllegalArgumentException("Unsupported data type: " + dataType);
-            }
-        };
+     * @return  int - number of bytes used by the header, the slots and the records
+     * @throws Exception
+     */
+    public int computeSize() {
+        return this.pageSize - this.freeBytes;
+    }
+
+    @Override
+    public void writeToHardware(ByteBuffer buffer) throws Exception {
+        int base = buffer.position();
+        buffer.putInt(this.numRecords);
+        buffer.putInt(this.pageNumber);
+        buffer.putInt(this.freeBytes);
+        for (int i = 0; i < this.numRecords; i++) {
+            buffer.putShort((short) this.slotOffsets[i]);
+            buffer.putShort((short) this.slotLengths[i]);
+            buffer.putShort((short) this.recordIds[i]);
+        }
+        // the space between the slots and the tuples is left as it is in the block
+        buffer.put(base + this.recordStart, this.data, this.recordStart, this.pageSize - this.recordStart);
+        buffer.position(base + this.pageSize);
+    }
+
+    @Override
+    public void readFromHardware(ByteBuffer buffer, TableSchema tableSchema) throws Exception {
+        // numRecords and pageNumber were read to identify the page
+        int base = buffer.position() - Integer.BYTES * 2;
+        this.freeBytes = buffer.getInt();
+        this.attributes = tableSchema.getAttributes();
+        int start = this.pageSize;
+        int maxRecordId = -1;
+        for (int i = 0; i < this.numRecords; i++) {
+            this.slotOffsets[i] = buffer.getShort() & 0xFFFF;
+            this.slotLengths[i] = buffer.getShort() & 0xFFFF;
+            this.recordIds[i] = buffer.getShort() & 0xFFFF;
+            start = Math.min(start, this.slotOffsets[i]);
+            maxRecordId = Math.max(maxRecordId, this.recordIds[i]);
+        }
+        if (maxRecordId >= this.recordIndexes.length) {
+            this.recordIndexes = new int[maxRecordId + 1];
+            Arrays.fill(this.recordIndexes, -1);
+        }
+        this.updateRecordIndexes(0);
+        buffer.get(base + start, this.data, start, this.pageSize - start);
+        this.recordStart = start;
+    }
+
+
+    /**
+     * Points the index bucket of a record that has moved into this page at its new place
+     *
+     * @param index The index of the record
+     */
+    private void updateBucket(int index) throws Exception {
+        TableSchema tableSchema = Catalog.getCatalog().getSchema(tableNumber);
+        Object primaryKey = this.getRecord(index).getValue(tableSchema.getPrimaryIndex());
+        Node root = StorageManager.getStorageManager().getNodePage(this.tableNumber, tableSchema.getRootNumber());
+        BPlusTree bPlusTree = new BPlusTree(tableSchema, root);
+        bPlusTree.updateBucket(primaryKey, new Bucket(this.pageNumber, this.recordIds[index]));
     }
 
     @Override
@@ -1,16 +1,31 @@
 package StorageManager.Objects;
 
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
+import Parser.Type;
 import StorageManager.StorageManagerObjectIntereface;
 import StorageManager.TableSchema;
+import StorageManager.Objects.Utility.ModifiedUtf8;
 
+/**
+ * A row of a table. A record is either built from a list of values or is a view
+ * of a tuple held in a page, whose columns are only decoded when they are asked for.
+ * The typed getters read a view's ints, doubles and booleans straight from the
+ * tuple, so scans and comparisons do not box them.
+ *
+ * A tuple starts with a null bitmap, one bit per attribute, followed by the
+ * values of the attributes that are not null.
+ */
 public class Record implements java.io.Serializable, StorageManagerObjectIntereface {
     private List<Object> values;
+    // the encoded tuple of a view, its values are decoded from it on first use
+    private ByteBuffer tuple;
+    private List<AttributeSchema> attributes;
+    private int[] columnOffsets;
 
     public Record(List<Object> values) {
         this.values = values;
@@ -18,12 +33,32 @@ public class Record implements java.io.Serializable, StorageManagerObjectInteref
 
     public Record(Record a, Record b){
         this.values = new ArrayList<>();
-        this.values.addAll(a.values);
-        this.values.addAll(b.values);
+        this.values.addAll(a.getValues());
+        this.values.addAll(b.getValues());
         //System.out.println("yesyt");
     }
 
+    /**
+     * Creates a view of an encoded tuple
+     *
+     * @param tuple         The tuple, from 0 up to its limit, it must not change afterwards
+     * @param attributes    The attributes of the table the tuple was encoded for
+     */
+    Record(ByteBuffer tuple, List<AttributeSchema> attributes) {
+        this.tuple = tuple;
+        this.attributes = attributes;
+    }
+
     public List<Object> getValues() {
+        if (this.values == null) {
+            List<Object> decoded = new ArrayList<>(this.attributes.size());
+            try {
+                decodeTuple(this.tuple.duplicate(), this.attributes, decoded);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            this.values = decoded;
+        }
         return values;
     }
 
@@ -32,7 +67,149 @@ public class Record implements java.io.Serializable, StorageManagerObjectInteref
     }
 
     public void addValue(Object val) {
-        this.values.add(val);
+        this.getValues().add(val);
+    }
+
+    /**
+     * Gets a single value, a view decodes only that column
+     * Prefer the typed getters, they do not box the value
+     *
+     * @param index The index of the attribute
+     * @return The value, null if the attribute is null
+     */
+    public Object getValue(int index) {
+        if (this.values != null) {
+            return this.values.get(index);
+        }
+        if (this.isNull(index)) {
+            return null;
+        }
+        switch (this.getType(index)) {
+            case INTEGER:
+                return this.getInt(index);
+            case DOUBLE:
+                return this.getDouble(index);
+            case BOOLEAN:
+                return this.getBoolean(index);
+            default:
+                return this.getString(index);
+        }
+    }
+
+    /**
+     * Gets the type of a value, from the schema for a view
+     * and from the value itself otherwise
+     *
+     * @param index The index of the attribute
+     * @return INTEGER, DOUBLE, BOOLEAN or STRING, NULL for a null value of a record built from values
+     */
+    public Type getType(int index) {
+        if (this.values == null) {
+            return this.attributes.get(index).getType();
+        }
+        Object value = this.values.get(index);
+        if (value instanceof Integer) {
+            return Type.INTEGER;
+        } else if (value instanceof Double) {
+            return Type.DOUBLE;
+        } else if (value instanceof Boolean) {
+            return Type.BOOLEAN;
+        } else if (value instanceof String) {
+            return Type.STRING;
+        }
+        return Type.NULL;
+    }
+
+    public boolean isNull(int index) {
+        if (this.values != null) {
+            return this.values.get(index) == null;
+        }
+        return isNull(this.tuple, 0, index);
+    }
+
+    public int getInt(int index) {
+        if (this.values != null) {
+            return (Integer) this.values.get(index);
+        }
+        return this.tuple.getInt(this.columnOffset(index));
+    }
+
+    public double getDouble(int index) {
+        if (this.values != null) {
+            return (Double) this.values.get(index);
+        }
+        return this.tuple.getDouble(this.columnOffset(index));
+    }
+
+    public boolean getBoolean(int index) {
+        if (this.values != null) {
+            return (Boolean) this.values.get(index);
+        }
+        return this.tuple.get(this.columnOffset(index)) != 0;
+    }
+
+    public String getString(int index) {
+        if (this.values != null) {
+            return (String) this.values.get(index);
+        }
+        try {
+            return ModifiedUtf8.get(this.tuple, this.columnOffset(index));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Gets where a column of a view starts in its tuple,
+     * the offsets of all columns are worked out together the first time
+     *
+     * @param index The index of the attribute
+     * @return The offset of the value
+     */
+    private int columnOffset(int index) {
+        if (this.columnOffsets == null) {
+            int[] offsets = new int[this.attributes.size()];
+            int position = nullMapSize(this.attributes.size());
+            for (int i = 0; i < offsets.length; i++) {
+                if (isNull(this.tuple, 0, i)) {
+                    offsets[i] = -1;
+                } else {
+                    offsets[i] = position;
+                    position += this.encodedSize(this.attributes.get(i), position);
+                }
+            }
+            this.columnOffsets = offsets;
+        }
+        int offset = this.columnOffsets[index];
+        if (offset == -1) {
+            throw new NullPointerException(String.format("Attribute %s is null",
+                    this.attributes.get(index).getAttributeName()));
+        }
+        return offset;
+    }
+
+    /**
+     * @return the number of bytes a non null value of the attribute takes in the tuple
+     */
+    private int encodedSize(AttributeSchema attributeSchema, int position) {
+        switch (attributeSchema.getType()) {
+            case INTEGER:
+                return Integer.BYTES;
+            case DOUBLE:
+                return Double.BYTES;
+            case BOOLEAN:
+                return 1;
+            default:
+                return Short.BYTES + (this.tuple.getShort(position) & 0xFFFF);
+        }
+    }
+
+    private static int nullMapSize(int numAttributes) {
+        return (numAttributes + 7) / 8;
+    }
+
+    private static boolean isNull(ByteBuffer buffer, int nullMapStart, int index) {
+        return (buffer.get(nullMapStart + index / 8) & (1 << (index % 8))) != 0;
     }
 
     /**
@@ -47,21 +224,17 @@ public class Record implements java.io.Serializable, StorageManagerObjectInteref
      *             >0: this > other
      */
     public int compareTo(Record other, int keyIndex) {
-        Object thisKey = this.values.get(keyIndex);
-        Object otherKey = other.values.get(keyIndex);
-
-        if (thisKey instanceof String) {
-            return ((String) thisKey).compareTo((String) otherKey);
-        } else if (thisKey instanceof Integer) {
-            return Integer.compare((Integer) thisKey, (Integer) otherKey);
-        } else if (thisKey instanceof Boolean) {
-            boolean thisBool = (Boolean) thisKey;
-            boolean otherBool = (Boolean) otherKey;
-            return Boolean.compare(otherBool, thisBool);
-        } else if (thisKey instanceof Double) {
-            return Double.compare((Double) thisKey, (Double) otherKey);
-        } else {
-            throw new IllegalArgumentException("Unsupported datatype");
+        switch (this.getType(keyIndex)) {
+            case STRING:
+                return this.getString(keyIndex).compareTo(other.getString(keyIndex));
+            case INTEGER:
+                return Integer.compare(this.getInt(keyIndex), other.getInt(keyIndex));
+            case BOOLEAN:
+                return Boolean.compare(other.getBoolean(keyIndex), this.getBoolean(keyIndex));
+            case DOUBLE:
+                return Double.compare(this.getDouble(keyIndex), other.getDouble(keyIndex));
+            default:
+                throw new IllegalArgumentException("Unsupported datatype");
         }
     }
 
@@ -78,20 +251,17 @@ public class Record implements java.io.Serializable, StorageManagerObjectInteref
      *             >0: this > other
      */
     public int compareTo(Object otherKey, int keyIndex) {
-        Object thisKey = this.values.get(keyIndex);
-
-        if (thisKey instanceof String) {
-            return ((String) thisKey).compareTo((String) otherKey);
-        } else if (thisKey instanceof Integer) {
-            return Integer.compare((Integer) thisKey, (Integer) otherKey);
-        } else if (thisKey instanceof Boolean) {
-            boolean thisBool = (Boolean) thisKey;
-            boolean otherBool = (Boolean) otherKey;
-            return Boolean.compare(thisBool, otherBool);
-        } else if (thisKey instanceof Double) {
-            return Double.compare((Double) thisKey, (Double) otherKey);
-        } else {
-            throw new IllegalArgumentException("Unsupported datatype");
+        switch (this.getType(keyIndex)) {
+            case STRING:
+                return this.getString(keyIndex).compareTo((String) otherKey);
+            case INTEGER:
+                return Integer.compare(this.getInt(keyIndex), (Integer) otherKey);
+            case BOOLEAN:
+                return Boolean.compare(this.getBoolean(keyIndex), (Boolean) otherKey);
+            case DOUBLE:
+                return Double.compare(this.getDouble(keyIndex), (Double) otherKey);
+            default:
+                throw new IllegalArgumentException("Unsupported datatype");
         }
     }
 
@@ -103,68 +273,84 @@ public class Record implements java.io.Serializable, StorageManagerObjectInteref
      */
     @Override
     public int computeSize() {
-        int size = 0;
+        if (this.values == null) {
+            return this.tuple.limit();
+        }
+        int size = nullMapSize(this.values.size());
         for (Object value: this.values) {
             if (value instanceof Integer) {
                 size += Integer.BYTES;
             } else if (value instanceof String) {
-                size += ((String) value).length() + Short.BYTES;
+                size += ModifiedUtf8.encodedLength((String) value) + Short.BYTES;
             } else if (value instanceof Boolean) {
                 size += 1;
             } else if (value instanceof Double) {
                 size += Double.BYTES;
-            } else {
-                size += 1;
             }
         }
         return size;
     }
 
     @Override
-    public void writeToHardware(RandomAccessFile tableAccessFile) throws IOException {
-        for (Object value : this.values) {
+    public void writeToHardware(ByteBuffer buffer) throws IOException {
+        if (this.values == null) {
+            // a view that was never decoded is copied as it is
+            buffer.put(buffer.position(), this.tuple, 0, this.tuple.limit());
+            buffer.position(buffer.position() + this.tuple.limit());
+            return;
+        }
+
+        int nullMapStart = buffer.position();
+        int nullMapSize = nullMapSize(this.values.size());
+        for (int i = 0; i < nullMapSize; i++) {
+            buffer.put((byte) 0);
+        }
+        for (int i = 0; i < this.values.size(); i++) {
+            Object value = this.values.get(i);
             if (value instanceof Integer) {
-                tableAccessFile.writeInt((Integer) value);
+                buffer.putInt((Integer) value);
             } else if (value instanceof String) {
-                tableAccessFile.writeUTF((String) value);
+                ModifiedUtf8.put(buffer, (String) value);
             } else if (value instanceof Double) {
-                tableAccessFile.writeDouble((Double) value);
+                buffer.putDouble((Double) value);
             } else if (value instanceof Boolean) {
-                tableAccessFile.writeBoolean((Boolean) value);
+                buffer.put((byte) ((Boolean) value ? 1 : 0));
             } else {
                 // null value
-                tableAccessFile.writeByte(-1);
+                int index = nullMapStart + i / 8;
+                buffer.put(index, (byte) (buffer.get(index) | (1 << (i % 8))));
             }
         }
     }
 
     @Override
-    public void readFromHardware(RandomAccessFile tableAccessFile, TableSchema tableSchema) throws IOException {
-        for (AttributeSchema attributeSchema : tableSchema.getAttributes()) {
-            if (!attributeSchema.isNotNull()) {
-                // check for null value
-                byte nullMarker = tableAccessFile.readByte();
-
-                if (nullMarker == -1) {
-                    this.values.add(null);
-                    continue;
-                } else {
-                    tableAccessFile.seek(tableAccessFile.getFilePointer() - 1);
-                }
+    public void readFromHardware(ByteBuffer buffer, TableSchema tableSchema) throws IOException {
+        this.values = new ArrayList<>(tableSchema.getAttributes().size());
+        decodeTuple(buffer, tableSchema.getAttributes(), this.values);
+    }
 
+    private static void decodeTuple(ByteBuffer buffer, List<AttributeSchema> attributes, List<Object> values)
+            throws IOException {
+        int nullMapStart = buffer.position();
+        buffer.position(nullMapStart + nullMapSize(attributes.size()));
+        for (int i = 0; i < attributes.size(); i++) {
+            if (isNull(buffer, nullMapStart, i)) {
+                values.add(null);
+                continue;
             }
-            if (attributeSchema.getDataType().equalsIgnoreCase("integer")) {
-                int value = tableAccessFile.readInt();
-                this.values.add(value);
-            } else if (attributeSchema.getDataType().equalsIgnoreCase("double")) {
-                double value = tableAccessFile.readDouble();
-                this.values.add(value);
-            } else if (attributeSchema.getDataType().equalsIgnoreCase("boolean")) {
-                boolean value = tableAccessFile.readBoolean();
-                this.values.add(value);
-            } else if (attributeSchema.getDataType().contains("char") || attributeSchema.getDataType().contains("varchar")) {
-                String value = tableAccessFile.readUTF();
-                this.values.add(value);
+            switch (attributes.get(i).getType()) {
+                case INTEGER:
+                    values.add(buffer.getInt());
+                    break;
+                case DOUBLE:
+                    values.add(buffer.getDouble());
+                    break;
+                case BOOLEAN:
+                    values.add(buffer.get() != 0);
+                    break;
+                default:
+                    values.add(ModifiedUtf8.get(buffer));
+                    break;
             }
         }
     }
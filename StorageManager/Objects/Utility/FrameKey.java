@@ -0,0 +1,47 @@
+package StorageManager.Objects.Utility;
+
+/**
+ * Identifies a frame in the page buffer.
+ * A frame is keyed by the table it belongs to, its page number
+ * and whether it is a table page or an index (B+ tree) node.
+ */
+public class FrameKey {
+    private final int tableNumber;
+    private final int pageNumber;
+    private final boolean indexPage;
+
+    public FrameKey(int tableNumber, int pageNumber, boolean indexPage) {
+        this.tableNumber = tableNumber;
+        this.pageNumber = pageNumber;
+        this.indexPage = indexPage;
+    }
+
+    public int getTableNumber() {
+        return tableNumber;
+    }
+
+    public int getPageNumber() {
+        return pageNumber;
+    }
+
+    public boolean isIndexPage() {
+        return indexPage;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 31 * tableNumber + pageNumber;
+        return indexPage ? ~result : result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof FrameKey))
+            return false;
+        FrameKey other = (FrameKey) obj;
+        return tableNumber == other.tableNumber && pageNumber == other.pageNumber
+                && indexPage == other.indexPage;
+    }
+}
@@ -0,0 +1,91 @@
+package StorageManager.Objects.Utility;
+
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads and writes strings in a ByteBuffer in the format of
+ * DataOutput.writeUTF: an unsigned short byte count followed by
+ * modified UTF-8, so pages written either way read back the same.
+ */
+public class ModifiedUtf8 {
+
+    private ModifiedUtf8() {
+    }
+
+    /**
+     * @return the number of bytes the string takes once encoded, not counting the length prefix
+     */
+    public static int encodedLength(String value) {
+        int length = value.length();
+        int encodedLength = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F) {
+                encodedLength++;
+            } else if (c > 0x07FF) {
+                encodedLength += 3;
+            } else {
+                encodedLength += 2;
+            }
+        }
+        return encodedLength;
+    }
+
+    public static void put(ByteBuffer buffer, String value) throws UTFDataFormatException {
+        int length = value.length();
+        int encodedLength = encodedLength(value);
+        if (encodedLength > 0xFFFF) {
+            throw new UTFDataFormatException("encoded string too long: " + encodedLength + " bytes");
+        }
+
+        buffer.putShort((short) encodedLength);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F) {
+                buffer.put((byte) c);
+            } else if (c > 0x07FF) {
+                buffer.put((byte) (0xE0 | ((c >> 12) & 0x0F)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else {
+                buffer.put((byte) (0xC0 | ((c >> 6) & 0x1F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    public static String get(ByteBuffer buffer) throws UTFDataFormatException {
+        int index = buffer.position();
+        String value = get(buffer, index);
+        buffer.position(index + Short.BYTES + (buffer.getShort(index) & 0xFFFF));
+        return value;
+    }
+
+    /**
+     * Reads a string at an absolute index without moving the buffer's position
+     */
+    public static String get(ByteBuffer buffer, int index) throws UTFDataFormatException {
+        int encodedLength = buffer.getShort(index) & 0xFFFF;
+        int position = index + Short.BYTES;
+        int end = position + encodedLength;
+        char[] chars = new char[encodedLength];
+        int count = 0;
+        while (position < end) {
+            int a = buffer.get(position++) & 0xFF;
+            if (a < 0x80) {
+                chars[count++] = (char) a;
+            } else if ((a & 0xE0) == 0xC0) {
+                int b = buffer.get(position++) & 0xFF;
+                chars[count++] = (char) (((a & 0x1F) << 6) | (b & 0x3F));
+            } else if ((a & 0xF0) == 0xE0) {
+                int b = buffer.get(position++) & 0xFF;
+                int c = buffer.get(position++) & 0xFF;
+                chars[count++] = (char) (((a & 0x0F) << 12) | ((b & 0x3F) << 6) | (c & 0x3F));
+            } else {
+                throw new UTFDataFormatException("malformed input around byte " + position);
+            }
+        }
+        return new String(chars, 0, count);
+    }
+}
@@ -0,0 +1,201 @@
+package StorageManager;
+
+import java.io.RandomAccessFile;
+
+import Parser.Type;
+import StorageManager.Objects.AttributeSchema;
+import StorageManager.Objects.Bucket;
+import StorageManager.Objects.Catalog;
+import StorageManager.Objects.IndexKey;
+import StorageManager.Objects.NodeKeys;
+import StorageManager.Objects.Record;
+import StorageManager.Objects.SchemaInterface;
+
+/**
+ * An index on an attribute other than the primary key, created with CREATE INDEX.
+ * It is a B+ tree keyed by the value of the attribute followed by the primary key,
+ * so records with the same value each have an entry. Records are found through
+ * their primary key, the entries do not point at pages and are not touched when
+ * a record moves to another page. Records with no value for the attribute are
+ * left out of the index.
+ * A table also gets a unique index on each of its unique attributes other than the
+ * primary key when it is created, which an insert probes for the value of the new record.
+ */
+public class SecondaryIndex implements SchemaInterface, IndexSchema {
+  // the entries have no use for a bucket, each leaf entry still has room for one
+  public static final Bucket NO_BUCKET = new Bucket(0, 0);
+  // the least N an index works with, a node splits into two that each keep a key
+  public static final int MIN_N = 3;
+
+  private String indexName;
+  private int indexNumber;
+  private int tableNumber;
+  private String attributeName;
+  private boolean unique;
+  private int indexRootNumber;
+  private int numIndexPages;
+
+  public SecondaryIndex(String indexName, int indexNumber, int tableNumber, String attributeName) {
+    this(indexName, indexNumber, tableNumber, attributeName, false);
+  }
+
+  public SecondaryIndex(String indexName, int indexNumber, int tableNumber, String attributeName, boolean unique) {
+    this.indexName = indexName;
+    this.indexNumber = indexNumber;
+    this.tableNumber = tableNumber;
+    this.attributeName = attributeName;
+    this.unique = unique;
+    this.indexRootNumber = -1;
+    this.numIndexPages = 0;
+  }
+
+  public SecondaryIndex() {
+  }
+
+  public String getIndexName() {
+    return indexName;
+  }
+
+  @Override
+  public int getIndexNumber() {
+    return indexNumber;
+  }
+
+  @Override
+  public int getTableNumber() {
+    return tableNumber;
+  }
+
+  public String getAttributeName() {
+    return attributeName;
+  }
+
+  /**
+   * @return whether the index enforces a unique attribute, such an index comes and goes with the attribute
+   */
+  public boolean isUnique() {
+    return unique;
+  }
+
+  @Override
+  public String getIndexFileName() {
+    return tableNumber + "_" + indexName;
+  }
+
+  /**
+   * @param tableSchema The schema of the table the index is on
+   * @return the index of the indexed attribute in the records of the table, -1 if it has none
+   */
+  public int getAttributeIndex(TableSchema tableSchema) {
+    for (int i = 0; i < tableSchema.getAttributes().size(); i++) {
+      if (tableSchema.getAttributes().get(i).getAttributeName().equals(this.attributeName)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @param tableSchema The schema of the table the index is on
+   * @param record      A record of the table
+   * @return the key of the entry of the record, null if the record has no value for the attribute
+   */
+  public IndexKey getKey(TableSchema tableSchema, Record record) {
+    int attributeIndex = this.getAttributeIndex(tableSchema);
+    if (record.isNull(attributeIndex)) {
+      return null;
+    }
+    return new IndexKey(record.getValue(attributeIndex), record.getValue(tableSchema.getPrimaryIndex()));
+  }
+
+  @Override
+  public NodeKeys createKeys() {
+    TableSchema tableSchema = Catalog.getCatalog().getSchema(this.tableNumber);
+    AttributeSchema attribute = tableSchema.getAttributes().get(this.getAttributeIndex(tableSchema));
+    AttributeSchema primaryKey = tableSchema.getAttributes().get(tableSchema.getPrimaryIndex());
+    return NodeKeys.forIndex(attribute.getType(), primaryKey.getType());
+  }
+
+  @Override
+  public int getRootNumber() {
+    return this.indexRootNumber;
+  }
+
+  @Override
+  public void setRoot(int rootNumber) {
+    this.indexRootNumber = rootNumber;
+  }
+
+  @Override
+  public int getNumIndexPages() {
+    return this.numIndexPages;
+  }
+
+  @Override
+  public int incrementNumIndexPages() {
+    this.numIndexPages++;
+    return this.numIndexPages;
+  }
+
+  @Override
+  public void setNumIndexPages(int num) {
+    this.numIndexPages = num;
+  }
+
+  /**
+   * @return the size of a key on hardware, the value then the primary key,
+   *         strings with their length prefix
+   */
+  private int computeKeySize(Catalog catalog) throws Exception {
+    TableSchema tableSchema = catalog.getSchema(this.tableNumber);
+    AttributeSchema attribute = tableSchema.getAttributes().get(this.getAttributeIndex(tableSchema));
+    AttributeSchema primaryKey = tableSchema.getAttributes().get(tableSchema.getPrimaryIndex());
+    int size = 0;
+    for (AttributeSchema part : new AttributeSchema[] { attribute, primaryKey }) {
+      size += tableSchema.getSizeofDataType(part.getDataType());
+      if (part.getType() == Type.STRING) {
+        size += Short.BYTES;
+      }
+    }
+    return size;
+  }
+
+  @Override
+  public int computeN(Catalog catalog) throws Exception {
+    return Math.floorDiv(catalog.getPageSize(), this.computeKeySize(catalog) + 8) - 1;
+  }
+
+  @Override
+  public int computeSizeOfNode(Catalog catalog) throws Exception {
+    int N = computeN(catalog);
+    return 1 + (Integer.BYTES * 5) + ((N - 1) * this.computeKeySize(catalog)) + (N * (Integer.BYTES * 2));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void saveSchema(RandomAccessFile catalogAccessFile) throws Exception {
+    catalogAccessFile.writeUTF(this.indexName);
+    catalogAccessFile.writeInt(this.indexNumber);
+    catalogAccessFile.writeInt(this.tableNumber);
+    catalogAccessFile.writeUTF(this.attributeName);
+    catalogAccessFile.writeBoolean(this.unique);
+    catalogAccessFile.writeInt(this.indexRootNumber);
+    catalogAccessFile.writeInt(this.numIndexPages);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void loadSchema(RandomAccessFile catalogAccessFile) throws Exception {
+    this.indexName = catalogAccessFile.readUTF();
+    this.indexNumber = catalogAccessFile.readInt();
+    this.tableNumber = catalogAccessFile.readInt();
+    this.attributeName = catalogAccessFile.readUTF();
+    this.unique = catalogAccessFile.readBoolean();
+    this.indexRootNumber = catalogAccessFile.readInt();
+    this.numIndexPages = catalogAccessFile.readInt();
+  }
+}
@@ -0,0 +1,186 @@
+package StorageManager;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import StorageManager.Objects.AttributeSchema;
+import StorageManager.Objects.Catalog;
+import StorageManager.Objects.MessagePrinter;
+import StorageManager.Objects.Page;
+import StorageManager.Objects.Record;
+import StorageManager.Objects.MessagePrinter.MessageType;
+
+/**
+ * Records a query sets aside on hardware because they do not fit in memory,
+ * such as a partition of a hash join. They are kept in pages laid out the way
+ * the pages of a table are, in the order they were added rather than by key,
+ * in a file of the temp directory of the database that is not read through
+ * the buffer. Records are added, then read back any number of times, only the
+ * page being written or read is held in memory.
+ *
+ * A page is as large as the pages of the tables unless the records may be
+ * larger than they allow, records joined from several tables can be.
+ */
+public class SpillFile {
+    private static final String TEMP_DIRECTORY = "/temp";
+
+    private TableSchema schema;
+    private File file;
+    private FileChannel channel;
+    private int pageSize;
+    private ByteBuffer block;
+    private int numPages;
+    // the encoded size of the records added
+    private long size;
+    private Page writePage;
+    private Page readPage;
+    private int readPageIndex;
+    private int position;
+
+    /**
+     * @param schema The schema the records follow, which decodes them when they are read back
+     */
+    public SpillFile(TableSchema schema) throws Exception {
+        Catalog catalog = Catalog.getCatalog();
+        File directory = new File(catalog.getDbLocation() + TEMP_DIRECTORY);
+        directory.mkdirs();
+        this.schema = schema;
+        this.file = File.createTempFile("spill", null, directory);
+        this.channel = new RandomAccessFile(this.file, "rw").getChannel();
+        this.pageSize = computePageSize(schema, catalog.getPageSize());
+        this.block = ByteBuffer.allocate(this.pageSize);
+        this.numPages = 0;
+        this.size = 0;
+    }
+
+    /**
+     * Deletes the files of spills a query did not get to delete, the database having stopped while it ran
+     *
+     * @param dbLocation The directory of the database
+     */
+    public static void deleteLeftovers(String dbLocation) {
+        File[] files = new File(dbLocation + TEMP_DIRECTORY).listFiles();
+        if (files != null) {
+            for (File leftover : files) {
+                leftover.delete();
+            }
+        }
+    }
+
+    /**
+     * @return the size of a page that holds the largest record of the schema,
+     *         a string of n characters is up to 3n bytes in modified UTF-8
+     */
+    private static int computePageSize(TableSchema schema, int pageSize) throws Exception {
+        int maxRecordSize = (schema.getAttributes().size() + 7) / 8;
+        for (AttributeSchema attribute : schema.getAttributes()) {
+            switch (attribute.getType()) {
+                case INTEGER:
+                    maxRecordSize += Integer.BYTES;
+                    break;
+                case DOUBLE:
+                    maxRecordSize += Double.BYTES;
+                    break;
+                case BOOLEAN:
+                    maxRecordSize += 1;
+                    break;
+                default:
+                    maxRecordSize += Short.BYTES + 3 * schema.getSizeofDataType(attribute.getDataType());
+            }
+        }
+        if (maxRecordSize <= Page.getMaxRecordSize(pageSize)) {
+            return pageSize;
+        }
+        // a record that is still too large is reported when it is added, most strings are far shorter
+        return Math.min(Page.MAX_PAGE_SIZE, pageSize + maxRecordSize - Page.getMaxRecordSize(pageSize));
+    }
+
+    /**
+     * @return the encoded size of the records added, how much memory they would take as pages
+     */
+    public long getSize() {
+        return this.size;
+    }
+
+    public void add(Record record) throws Exception {
+        if (this.writePage == null || !this.writePage.appendRecord(record)) {
+            if (this.writePage != null) {
+                this.writePage();
+            }
+            this.writePage = new Page(0, this.schema.getTableNumber(), this.numPages + 1, this.pageSize);
+            if (!this.writePage.appendRecord(record)) {
+                MessagePrinter.printMessage(MessageType.ERROR,
+                        String.format("A record of %d bytes is too large to be spilled", record.computeSize()));
+            }
+        }
+        this.size += record.computeSize();
+    }
+
+    /**
+     * Goes back to the first record, writing out the page being filled
+     */
+    public void rewind() throws Exception {
+        if (this.writePage != null) {
+            this.writePage();
+            this.writePage = null;
+        }
+        this.readPage = null;
+        this.readPageIndex = 0;
+        this.position = 0;
+    }
+
+    /**
+     * @return the next record, null once every record has been read
+     */
+    public Record next() throws Exception {
+        while (this.readPage == null || this.position >= this.readPage.getNumRecords()) {
+            if (this.readPageIndex >= this.numPages) {
+                return null;
+            }
+            this.readPage = this.readPage(this.readPageIndex++);
+            this.position = 0;
+        }
+        return this.readPage.getRecord(this.position++);
+    }
+
+    /**
+     * Closes and deletes the file
+     */
+    public void delete() throws Exception {
+        this.writePage = null;
+        this.readPage = null;
+        this.channel.close();
+        this.file.delete();
+    }
+
+    private void writePage() throws Exception {
+        this.block.clear();
+        this.writePage.writeToHardware(this.block);
+        this.block.flip();
+        long filePosition = (long) this.pageSize * this.numPages;
+        while (this.block.hasRemaining()) {
+            filePosition += this.channel.write(this.block, filePosition);
+        }
+        this.numPages++;
+    }
+
+    private Page readPage(int pageIndex) throws Exception {
+        this.block.clear();
+        long filePosition = (long) this.pageSize * pageIndex;
+        while (this.block.hasRemaining()) {
+            int read = this.channel.read(this.block, filePosition);
+            if (read < 0) {
+                break;
+            }
+            filePosition += read;
+        }
+        this.block.flip();
+        int numRecords = this.block.getInt();
+        int pageNumber = this.block.getInt();
+        Page page = new Page(numRecords, this.schema.getTableNumber(), pageNumber, this.pageSize);
+        page.readFromHardware(this.block, this.schema);
+        return page;
+    }
+}
@@ -1,20 +1,30 @@
 package StorageManager;
 
 import java.io.File;
-import java.io.RandomAccessFile;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
-import java.util.PriorityQueue;
-import java.util.Random;
+import java.util.Map;
 
 import Parser.Insert;
 import QueryExecutor.InsertQueryExcutor;
+import StorageManager.Buffer.ClockReplacementPolicy;
+import StorageManager.Buffer.ReplacementPolicy;
+import StorageManager.Buffer.TwoQueueReplacementPolicy;
 import StorageManager.Objects.AttributeSchema;
 import StorageManager.Objects.BPlusTree;
 import StorageManager.Objects.Bucket;
 import StorageManager.Objects.BufferPage;
 import StorageManager.Objects.Catalog;
+import StorageManager.Objects.IndexCursor;
+import StorageManager.Objects.IndexKey;
 import StorageManager.Objects.InternalNode;
 import StorageManager.Objects.LeafNode;
 import StorageManager.Objects.Node;
@@ -22,31 +32,77 @@ import StorageManager.Objects.MessagePrinter;
 import StorageManager.Objects.Page;
 import StorageManager.Objects.Record;
 import StorageManager.Objects.MessagePrinter.MessageType;
+import StorageManager.Objects.Utility.FrameKey;
 import StorageManager.Objects.Utility.Pair;
 
 public class StorageManager implements StorageManagerInterface {
+    // table and index files grow by this many page slots at a time
+    private static final int EXTENT_SLOTS = 16;
+    // frames are written file by file, front to back
+    private static final Comparator<BufferPage> WRITE_ORDER = Comparator
+            .comparingInt((BufferPage page) -> page.getFrameKey().getTableNumber())
+            .thenComparing((BufferPage page) -> page.getFrameKey().isIndexPage())
+            .thenComparingInt(BufferPage::getPageNumber);
+
     private static StorageManager storageManager;
-    private PriorityQueue<BufferPage> buffer;
+    private ReplacementPolicy replacementPolicy;
+    private Map<FrameKey, BufferPage> frameTable;
     private int bufferSize;
+    private long bufferHits;
+    private long bufferMisses;
+    private List<BufferPage> scopePins;
+    private Deque<Integer> pinScopes;
+    private DirtyPageWriter dirtyPageWriter;
+    private FileManager fileManager;
+    private ByteBuffer ioBuffer;
+    private Map<Integer, FreeSpaceMap> freeSpaceMaps;
+    private double indexFillFactor;
 
     /**
      * Constructor for the storage manager
-     * initializes the class by initializing the buffer
+     * initializes the class by initializing the buffer:
+     * the frame table used to look pages up and the
+     * replacement policy that picks pages to evict
      *
-     * @param buffersize The size of the buffer
+     * @param buffersize    The size of the buffer
+     * @param bufferPolicy  The name of the replacement policy
+     * @param storageMode   How table and index files are accessed, channel or mmap
      */
-    private StorageManager(int bufferSize) {
+    private StorageManager(int bufferSize, String bufferPolicy, String storageMode) throws Exception {
         this.bufferSize = bufferSize;
-        this.buffer = new PriorityQueue<>(bufferSize, new Page());
+        this.replacementPolicy = createReplacementPolicy(bufferPolicy, bufferSize);
+        this.frameTable = new HashMap<>(bufferSize * 2);
+        this.bufferHits = 0;
+        this.bufferMisses = 0;
+        this.scopePins = new ArrayList<>();
+        this.pinScopes = new ArrayDeque<>();
+        this.fileManager = new FileManager(storageMode);
+        this.freeSpaceMaps = new HashMap<>();
+        this.indexFillFactor = 0.9;
     }
 
     /**
      * Static function that initializes the storageManager
      *
-     * @param bufferSize The size of the buffer
+     * @param bufferSize    The size of the buffer
+     * @param bufferPolicy  The name of the replacement policy, clock or 2q
+     * @param storageMode   How table and index files are accessed, channel or mmap
      */
-    public static void createStorageManager(int bufferSize) {
-        storageManager = new StorageManager(bufferSize);
+    public static void createStorageManager(int bufferSize, String bufferPolicy, String storageMode)
+            throws Exception {
+        storageManager = new StorageManager(bufferSize, bufferPolicy, storageMode);
+    }
+
+    private static ReplacementPolicy createReplacementPolicy(String name, int capacity) throws Exception {
+        switch (name) {
+            case ClockReplacementPolicy.NAME:
+                return new ClockReplacementPolicy(capacity);
+            case TwoQueueReplacementPolicy.NAME:
+                return new TwoQueueReplacementPolicy(capacity);
+            default:
+                MessagePrinter.printMessage(MessageType.ERROR, String.format("Unknown buffer policy: %s", name));
+                return null;
+        }
     }
 
     /**
@@ -71,7 +127,7 @@ public class StorageManager implements StorageManagerInterface {
     private List<Page> pageSplit(Page page, Record record, TableSchema tableSchema, int primaryKeyIndex)
             throws Exception {
         // Create a new page
-        Page newPage = new Page(0, tableSchema.getTableNumber(), tableSchema.getNumPages() + 1);
+        Page newPage = new Page(0, tableSchema.getTableNumber(), tableSchema.allocatePageNumber());
         tableSchema.addPageNumber(page.getPageNumber(), newPage.getPageNumber());
         List<Page> results = Arrays.asList(newPage);
 
@@ -80,7 +136,7 @@ public class StorageManager implements StorageManagerInterface {
         if (page.getRecords().size() == 1) {
             Record lastRecordInCurrPage = page.getRecords().get(page.getRecords().size() - 1);
             if (record.compareTo(lastRecordInCurrPage, primaryKeyIndex) < 0) {
-                page.getRecords().clear();
+                page.removeRecordsFrom(0);
                 page.addNewRecord(record, false);
                 newPage.addNewRecord(lastRecordInCurrPage, true);
             } else {
@@ -98,7 +154,7 @@ public class StorageManager implements StorageManagerInterface {
                 }
             }
 
-            page.getRecords().subList(splitIndex, page.getRecords().size()).clear();
+            page.removeRecordsFrom(splitIndex);
 
             // decide what page to add record to
             Record lastRecordInCurrPage = page.getRecords().get(page.getRecords().size() - 1);
@@ -118,8 +174,6 @@ public class StorageManager implements StorageManagerInterface {
             }
         }
 
-        page.setNumRecords();
-        newPage.setNumRecords();
         page.setChanged();
 
         // Add the new page to the buffer
@@ -127,6 +181,55 @@ public class StorageManager implements StorageManagerInterface {
         return results;
     }
 
+    /**
+     * Makes room for a record that does not fit in its page by moving the record
+     * that sorts last, the new one or the page's last one, to the front of the
+     * next page. The free space map tells whether the next page has room,
+     * so a next page that cannot take it is not read.
+     * A record of the page that moves has its index bucket changed with it
+     *
+     * @param page            The full page the record belongs in
+     * @param record          The record to insert
+     * @param tableSchema     The schema of the table
+     * @param primaryKeyIndex The index in which the PK resides in the record
+     * @return The next page if the record was inserted, otherwise null and nothing was changed
+     * @throws Exception
+     */
+    private Page spillToNextPage(Page page, Record record, TableSchema tableSchema, int primaryKeyIndex)
+            throws Exception {
+        List<Integer> pageOrder = tableSchema.getPageOrder();
+        int position = pageOrder.indexOf(page.getPageNumber());
+        if (position == -1 || position == pageOrder.size() - 1 || page.getNumRecords() == 0) {
+            return null;
+        }
+        int nextPageNumber = pageOrder.get(position + 1);
+        Record lastRecord = page.getRecord(page.getNumRecords() - 1);
+        boolean recordSortsLast = record.compareTo(lastRecord, primaryKeyIndex) > 0;
+        Record movedRecord = recordSortsLast ? record : lastRecord;
+        if (!recordSortsLast && page.getFreeBytes() + Page.getSpaceNeeded(lastRecord) < Page.getSpaceNeeded(record)) {
+            // moving the last record out would not make enough room
+            return null;
+        }
+        if (this.getFreeBytes(tableSchema.getTableNumber(), nextPageNumber) < Page.getSpaceNeeded(movedRecord)) {
+            return null;
+        }
+
+        Page nextPage = this.getPage(tableSchema.getTableNumber(), nextPageNumber);
+        this.pinForScope(nextPage);
+        if (!nextPage.canFit(movedRecord)) {
+            // the map was out of date
+            return null;
+        }
+        if (recordSortsLast) {
+            nextPage.addNewRecord(record, false);
+        } else {
+            page.deleteRecord(page.getNumRecords() - 1);
+            nextPage.addNewRecord(lastRecord, true);
+            page.addNewRecord(record, false);
+        }
+        return nextPage;
+    }
+
     /**
      * Construct the full table path according to where
      * the DB is located
@@ -140,6 +243,48 @@ public class StorageManager implements StorageManagerInterface {
         return dbLoc + "/tables/" + Integer.toString(tableNumber);
     }
 
+    /**
+     * @param tableNumber the id of the table
+     *
+     * @return the path of the table's free space map, next to the table file
+     */
+    private String getFreeSpaceMapPath(int tableNumber) {
+        return this.getTablePath(tableNumber) + ".fsm";
+    }
+
+    /**
+     * Gets the free space map of a table, reading it on first use
+     *
+     * @param tableNumber the id of the table
+     *
+     * @return the map
+     */
+    private FreeSpaceMap getFreeSpaceMap(int tableNumber) throws Exception {
+        FreeSpaceMap freeSpaceMap = this.freeSpaceMaps.get(tableNumber);
+        if (freeSpaceMap == null) {
+            freeSpaceMap = FreeSpaceMap.load(this.getFreeSpaceMapPath(tableNumber));
+            this.freeSpaceMaps.put(tableNumber, freeSpaceMap);
+        }
+        return freeSpaceMap;
+    }
+
+    /**
+     * Gets the number of free bytes in a page without reading it,
+     * from its frame when it is in the buffer, otherwise from the free space map
+     *
+     * @param tableNumber the id of the table
+     * @param pageNumber  the number of the page
+     *
+     * @return the free bytes of the page
+     */
+    private int getFreeBytes(int tableNumber, int pageNumber) throws Exception {
+        BufferPage page = this.frameTable.get(new FrameKey(tableNumber, pageNumber, false));
+        if (page != null) {
+            return ((Page) page).getFreeBytes();
+        }
+        return this.getFreeSpaceMap(tableNumber).getFreeBytes(pageNumber);
+    }
+
     /**
      * Construct the full indexing file path according to where
      * the DB is located
@@ -153,7 +298,18 @@ public class StorageManager implements StorageManagerInterface {
         return dbLoc + "/indexing/" + Integer.toString(tableNumber);
     }
 
-    public Bucket getPrimaryKeyBucket(int tableNumber, Object primaryKey, List<Page> pagesToLookThrough)
+    /**
+     * Gets the path of the file of an index, the primary key index of a table or a secondary index
+     *
+     * @param index The index
+     * @return the full indexing path
+     */
+    private String getIndexingPath(IndexSchema index) {
+        String dbLoc = Catalog.getCatalog().getDbLocation();
+        return dbLoc + "/indexing/" + index.getIndexFileName();
+    }
+
+    public synchronized Bucket getPrimaryKeyBucket(int tableNumber, Object primaryKey, List<Page> pagesToLookThrough)
             throws Exception {
         Catalog catalog = Catalog.getCatalog();
         TableSchema schema = catalog.getSchema(tableNumber);
@@ -183,19 +339,22 @@ public class StorageManager implements StorageManagerInterface {
             }
         }
 
-        List<Record> records = foundPage.getRecords();
-        for (Record i : records) {
-            if (i.compareTo(primaryKey, primaryKeyIndex) == 0) {
-                return new Bucket(foundPage.getPageNumber(), records.indexOf(i));
-            }
+        int index = foundPage.findRecord(primaryKey, primaryKeyIndex);
+        if (index >= 0) {
+            return new Bucket(foundPage.getPageNumber(), foundPage.getRecordId(index));
         }
 
         return null;
     }
 
-    public Record getRecord(int tableNumber, Object primaryKey) throws Exception {
+    public synchronized Record getRecord(int tableNumber, Object primaryKey) throws Exception {
         // used for selecting based on primary key
         Catalog catalog = Catalog.getCatalog();
+        if (catalog.isIndexingOn()) {
+            // a single descent of the index rather than a walk over the pages before the record's
+            List<Record> records = this.getRecords(tableNumber, Collections.singletonList(primaryKey));
+            return records.isEmpty() ? null : records.get(0);
+        }
         TableSchema schema = catalog.getSchema(tableNumber);
         int primaryKeyIndex = schema.getPrimaryIndex();
         List<Integer> pageOrder = schema.getPageOrder();
@@ -227,11 +386,9 @@ public class StorageManager implements StorageManagerInterface {
             // a page with the record was not found
             return null;
         } else {
-            List<Record> records = foundPage.getRecords();
-            for (Record i : records) {
-                if (i.compareTo(primaryKey, primaryKeyIndex) == 0) {
-                    return i;
-                }
+            int index = foundPage.findRecord(primaryKey, primaryKeyIndex);
+            if (index >= 0) {
+                return foundPage.getRecord(index);
             }
             // record was not found
             return null;
@@ -243,7 +400,7 @@ public class StorageManager implements StorageManagerInterface {
         return this.getRecord(tableNumber, primaryKey);
     }
 
-    public List<Record> getAllRecords(int tableNumber) throws Exception {
+    public synchronized List<Record> getAllRecords(int tableNumber) throws Exception {
         List<Record> records = new ArrayList<>(); // List to store all records
         List<Page> allPagesForTable = new ArrayList<>();
         Catalog catalog = Catalog.getCatalog();
@@ -264,11 +421,215 @@ public class StorageManager implements StorageManagerInterface {
         return this.getAllRecords(tableNum);
     }
 
-    public void insertRecord(int tableNumber, Record record) throws Exception {
+    /**
+     * Opens a cursor over the records of a table, which reads the pages one at a time
+     * as it reaches them rather than all of them up front
+     *
+     * @param tableNumber   The number of the table
+     * @return a cursor at the first record of the table
+     * @throws Exception
+     */
+    public synchronized TableCursor openTableCursor(int tableNumber) throws Exception {
+        TableSchema tableSchema = Catalog.getCatalog().getSchema(tableNumber);
+        return new TableCursor(tableNumber, new ArrayList<>(tableSchema.getPageOrder()));
+    }
+
+    /**
+     * Gets the records of a table with the given primary keys. With indexing on each
+     * record is found through the index, otherwise the pages are read in order up to
+     * the page of the last key. Keys with no record are skipped.
+     *
+     * @param tableNumber   The number of the table
+     * @param primaryKeys   The primary keys, ascending
+     * @return the records, ascending by primary key
+     * @throws Exception
+     */
+    public synchronized List<Record> getRecords(int tableNumber, List<Object> primaryKeys) throws Exception {
+        Catalog catalog = Catalog.getCatalog();
+        TableSchema tableSchema = catalog.getSchema(tableNumber);
+        int primaryKeyIndex = tableSchema.getPrimaryIndex();
+        List<Record> records = new ArrayList<>();
+        if (primaryKeys.isEmpty() || tableSchema.getNumPages() == 0) {
+            return records;
+        }
+
+        if (catalog.isIndexingOn()) {
+            if (tableSchema.getNumIndexPages() == 0) {
+                return records;
+            }
+            BPlusTree bPlusTree = new BPlusTree(tableSchema, this.getNodePage(tableNumber, tableSchema.getRootNumber()));
+            for (Object primaryKey : primaryKeys) {
+                Bucket bucket = bPlusTree.search(primaryKey);
+                if (bucket != null) {
+                    Page page = this.getPage(tableNumber, bucket.getPageNumber());
+                    records.add(page.getRecord(page.getRecordIndex(bucket.getRecordId())));
+                }
+            }
+            return records;
+        }
+
+        int next = 0;
+        for (int pageNumber : tableSchema.getPageOrder()) {
+            if (next == primaryKeys.size()) {
+                break;
+            }
+            Page page = this.getPage(tableNumber, pageNumber);
+            if (page.getNumRecords() == 0) {
+                continue;
+            }
+            Record lastRecord = page.getRecord(page.getNumRecords() - 1);
+            while (next < primaryKeys.size() && lastRecord.compareTo(primaryKeys.get(next), primaryKeyIndex) >= 0) {
+                int index = page.findRecord(primaryKeys.get(next), primaryKeyIndex);
+                if (index >= 0) {
+                    records.add(page.getRecord(index));
+                }
+                next++;
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Gets the records of a table whose primary key lies in a range. With indexing on the
+     * index is descended once to the lowest key and its leaves are followed to the highest,
+     * otherwise the pages before the one holding the lowest key are skipped by their last
+     * record and the walk stops at the first record past the highest key.
+     *
+     * @param tableNumber       The number of the table
+     * @param lower             The lowest primary key, null for no lower bound
+     * @param lowerInclusive    Whether the lowest primary key itself is in the range
+     * @param upper             The highest primary key, null for no upper bound
+     * @param upperInclusive    Whether the highest primary key itself is in the range
+     * @return the records, ascending by primary key
+     * @throws Exception
+     */
+    public synchronized List<Record> getRecordsInRange(int tableNumber, Object lower, boolean lowerInclusive,
+            Object upper, boolean upperInclusive) throws Exception {
+        Catalog catalog = Catalog.getCatalog();
+        TableSchema tableSchema = catalog.getSchema(tableNumber);
+        int primaryKeyIndex = tableSchema.getPrimaryIndex();
+        List<Record> records = new ArrayList<>();
+        if (tableSchema.getNumPages() == 0) {
+            return records;
+        }
+
+        if (catalog.isIndexingOn()) {
+            if (tableSchema.getNumIndexPages() == 0) {
+                return records;
+            }
+            BPlusTree bPlusTree = new BPlusTree(tableSchema, this.getNodePage(tableNumber, tableSchema.getRootNumber()));
+            IndexCursor cursor = bPlusTree.scan(lower, lowerInclusive, upper, upperInclusive);
+            for (; cursor.hasEntry(); cursor.next()) {
+                Bucket bucket = cursor.getBucket();
+                Page page = this.getPage(tableNumber, bucket.getPageNumber());
+                records.add(page.getRecord(page.getRecordIndex(bucket.getRecordId())));
+            }
+            return records;
+        }
+
+        for (int pageNumber : tableSchema.getPageOrder()) {
+            Page page = this.getPage(tableNumber, pageNumber);
+            if (page.getNumRecords() == 0) {
+                continue;
+            }
+            if (lower != null) {
+                int comparison = page.getRecord(page.getNumRecords() - 1).compareTo(lower, primaryKeyIndex);
+                if (comparison < 0 || (comparison == 0 && !lowerInclusive)) {
+                    continue;
+                }
+            }
+            for (int i = 0; i < page.getNumRecords(); i++) {
+                Record record = page.getRecord(i);
+                if (lower != null) {
+                    int comparison = record.compareTo(lower, primaryKeyIndex);
+                    if (comparison < 0 || (comparison == 0 && !lowerInclusive)) {
+                        continue;
+                    }
+                }
+                if (upper != null) {
+                    int comparison = record.compareTo(upper, primaryKeyIndex);
+                    if (comparison > 0 || (comparison == 0 && !upperInclusive)) {
+                        return records;
+                    }
+                }
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Finds the records whose value of an indexed attribute lies in a range through a secondary index
+     *
+     * @param index             The index
+     * @param lower             The lowest value, null for no lower bound
+     * @param lowerInclusive    Whether the lowest value itself is in the range
+     * @param upper             The highest value, null for no upper bound
+     * @param upperInclusive    Whether the highest value itself is in the range
+     * @return the primary keys of the records, by value then by primary key
+     * @throws Exception
+     */
+    public synchronized List<Object> getIndexedPrimaryKeys(SecondaryIndex index, Object lower, boolean lowerInclusive,
+            Object upper, boolean upperInclusive) throws Exception {
+        List<Object> primaryKeys = new ArrayList<>();
+        if (index.getNumIndexPages() == 0) {
+            return primaryKeys;
+        }
+
+        BPlusTree bPlusTree = new BPlusTree(index, this.getNodePage(index.getIndexNumber(), index.getRootNumber()));
+        IndexCursor cursor = lower == null ? bPlusTree.first() : bPlusTree.seek(new IndexKey(lower, null));
+        for (; cursor.hasEntry(); cursor.next()) {
+            IndexKey key = (IndexKey) cursor.getKey();
+            if (lower != null && !lowerInclusive && IndexKey.compareValues(key.getValue(), lower) == 0) {
+                continue;
+            }
+            if (upper != null) {
+                int comparison = IndexKey.compareValues(key.getValue(), upper);
+                if (comparison > 0 || (comparison == 0 && !upperInclusive)) {
+                    break;
+                }
+            }
+            primaryKeys.add(key.getPrimaryKey());
+        }
+        return primaryKeys;
+    }
+
+    /**
+     * Looks a value up in a secondary index, a single descent from the root
+     *
+     * @param index The index
+     * @param value The value of the indexed attribute
+     * @return the primary key of a record with the value, null if no record has it
+     * @throws Exception
+     */
+    public synchronized Object findIndexedPrimaryKey(SecondaryIndex index, Object value) throws Exception {
+        if (index.getNumIndexPages() == 0) {
+            return null;
+        }
+
+        BPlusTree bPlusTree = new BPlusTree(index, this.getNodePage(index.getIndexNumber(), index.getRootNumber()));
+        IndexCursor cursor = bPlusTree.seek(new IndexKey(value, null));
+        if (cursor.hasEntry() && IndexKey.compareValues(((IndexKey) cursor.getKey()).getValue(), value) == 0) {
+            return ((IndexKey) cursor.getKey()).getPrimaryKey();
+        }
+        return null;
+    }
+
+    public synchronized void insertRecord(int tableNumber, Record record) throws Exception {
+        this.beginPinScope();
+        try {
+            this.insertRecordHelper(tableNumber, record);
+            this.insertIndexEntries(tableNumber, record);
+        } finally {
+            this.endPinScope();
+        }
+    }
+
+    private void insertRecordHelper(int tableNumber, Record record) throws Exception {
         Catalog catalog = Catalog.getCatalog();
         // get tableSchema from the catalog
         TableSchema tableSchema = catalog.getSchema(tableNumber);
-        if (record.computeSize() > (catalog.getPageSize() - (Integer.BYTES * 2))) {
+        if (record.computeSize() > Page.getMaxRecordSize(catalog.getPageSize())) {
             MessagePrinter.printMessage(MessageType.ERROR,
                     "Unable to insert record. The record size is larger than the page size.");
         }
@@ -285,7 +646,7 @@ public class StorageManager implements StorageManagerInterface {
         if (!tableFile.exists()) {
             tableFile.createNewFile();
             // create a new page and insert the new record into it
-            Page _new = new Page(0, tableNumber, 1);
+            Page _new = new Page(0, tableNumber, tableSchema.allocatePageNumber());
             tableSchema.addPageNumber(_new.getPageNumber());
             _new.addNewRecord(record, false);
             tableSchema.incrementNumRecords();
@@ -299,16 +660,16 @@ public class StorageManager implements StorageManagerInterface {
                     LeafNode root = new LeafNode(tableNumber, 1, -1);
                     tableSchema.incrementNumIndexPages();
                     BPlusTree bPlusTree = new BPlusTree(tableSchema, root);
-                    Object primaryKey = record.getValues().get(primaryKeyIndex);
+                    Object primaryKey = record.getValue(primaryKeyIndex);
                     this.addPageToBuffer(root);
                     tableSchema.setRoot(1);
-                    bPlusTree.insert(primaryKey, new Bucket(1, 0));
+                    bPlusTree.insert(primaryKey, new Bucket(_new.getPageNumber(), 0));
                 }
             }
         } else {
             if (catalog.isIndexingOn()) {
                 if (tableSchema.getNumPages() == 0) {
-                    Page _new = new Page(0, tableNumber, 1);
+                    Page _new = new Page(0, tableNumber, tableSchema.allocatePageNumber());
                     tableSchema.addPageNumber(_new.getPageNumber());
                     _new.addNewRecord(record, false);
                     tableSchema.incrementNumRecords();
@@ -320,73 +681,69 @@ public class StorageManager implements StorageManagerInterface {
                     LeafNode root = new LeafNode(tableNumber, 1, -1);
                     tableSchema.incrementNumIndexPages();
                     BPlusTree bPlusTree = new BPlusTree(tableSchema, root);
-                    Object primaryKey = record.getValues().get(primaryKeyIndex);
+                    Object primaryKey = record.getValue(primaryKeyIndex);
                     this.addPageToBuffer(root);
                     tableSchema.setRoot(1);
-                    bPlusTree.insert(primaryKey, new Bucket(1, 0));
+                    bPlusTree.insert(primaryKey, new Bucket(_new.getPageNumber(), 0));
                 } else {
-                    Object primaryKey = record.getValues().get(primaryKeyIndex);
+                    Object primaryKey = record.getValue(primaryKeyIndex);
                     Node root = this.getNodePage(tableNumber, tableSchema.getRootNumber());
                     BPlusTree bPlusTree = new BPlusTree(tableSchema, root);
                     Bucket bucketPrior = bPlusTree.canInsert(primaryKey);
                     Page page = this.getPage(tableNumber, bucketPrior.getPageNumber());
-                    Bucket newBucket;
-                    if (bucketPrior.getIndex() == 0) {
-                        // This means the new record can go before or after the first record in the page
-                        if (!page.addNewRecord(record, false)) {
-                            List<Page> pages = this.pageSplit(page, record, tableSchema, primaryKeyIndex);
-                            List<Page> checkPages = new ArrayList<>(Arrays.asList(page));
-                            checkPages.addAll(pages);
-                            newBucket = this.getPrimaryKeyBucket(tableNumber, primaryKey, checkPages);
-                        } else {
-                            List<Page> pages = Arrays.asList(page);
-                            newBucket = this.getPrimaryKeyBucket(tableNumber, primaryKey, pages);
-                        }
-                    } else {
-                        if (!page.addNewRecord(record, bucketPrior.getIndex() + 1)) {
-                            List<Page> pages = this.pageSplit(page, record, tableSchema, primaryKeyIndex);
-                            List<Page> checkPages = new ArrayList<>(Arrays.asList(page));
-                            checkPages.addAll(pages);
-                            newBucket = this.getPrimaryKeyBucket(tableNumber, primaryKey, checkPages);
+                    this.pinForScope(page);
+                    // the new record goes in the page of the record before it, the other
+                    // records keep their record ids so their buckets stay as they are
+                    List<Page> checkPages = new ArrayList<>(Arrays.asList(page));
+                    if (!page.addNewRecord(record, false)) {
+                        Page nextPage = this.spillToNextPage(page, record, tableSchema, primaryKeyIndex);
+                        if (nextPage != null) {
+                            checkPages.add(nextPage);
                         } else {
-                            newBucket = new Bucket(page.getPageNumber(), bucketPrior.getIndex() + 1);
+                            checkPages.addAll(this.pageSplit(page, record, tableSchema, primaryKeyIndex));
                         }
                     }
+                    Bucket newBucket = this.getPrimaryKeyBucket(tableNumber, primaryKey, checkPages);
                     tableSchema.incrementNumRecords();
                     bPlusTree.insert(primaryKey, newBucket);
                 }
             } else {
                 if (tableSchema.getNumPages() == 0) {
-                    Page _new = new Page(0, tableNumber, 1);
+                    Page _new = new Page(0, tableNumber, tableSchema.allocatePageNumber());
                     tableSchema.addPageNumber(_new.getPageNumber());
                     _new.addNewRecord(record, false);
                     tableSchema.incrementNumRecords();
                     // then add the page to the buffer
                     this.addPageToBuffer(_new);
                 } else {
-                    for (Integer pageNumber : tableSchema.getPageOrder()) {
-                        Page page = this.getPage(tableNumber, pageNumber);
-                        if (page.getNumRecords() == 0) {
-                            if (!page.addNewRecord(record, false)) {
-                                // page was full
-                                this.pageSplit(page, record, tableSchema, primaryKeyIndex);
+                    List<Integer> pageOrder = tableSchema.getPageOrder();
+                    // records are often appended in key order, those go to the last page
+                    // without reading the pages before it
+                    Page targetPage = this.getPage(tableNumber, pageOrder.get(pageOrder.size() - 1));
+                    if (targetPage.getNumRecords() > 0 && record.compareTo(
+                            targetPage.getRecord(targetPage.getNumRecords() - 1), primaryKeyIndex) < 0) {
+                        for (Integer pageNumber : pageOrder) {
+                            Page page = this.getPage(tableNumber, pageNumber);
+                            if (page.getNumRecords() == 0) {
+                                targetPage = page;
+                                break;
                             }
-                            tableSchema.incrementNumRecords();
-                            break;
-                        }
 
-                        Record lastRecordInPage = page.getRecords().get(page.getRecords().size() - 1);
-                        if ((record.compareTo(lastRecordInPage, primaryKeyIndex) < 0) ||
-                                (pageNumber == tableSchema.getPageOrder().get(tableSchema.getPageOrder().size() - 1))) {
-                            // record is less than lastRecordPage
-                            if (!page.addNewRecord(record, false)) {
-                                // page was full
-                                this.pageSplit(page, record, tableSchema, primaryKeyIndex);
+                            Record lastRecordInPage = page.getRecord(page.getNumRecords() - 1);
+                            if (record.compareTo(lastRecordInPage, primaryKeyIndex) < 0) {
+                                // record is less than lastRecordPage
+                                targetPage = page;
+                                break;
                             }
-                            tableSchema.incrementNumRecords();
-                            break;
                         }
                     }
+                    this.pinForScope(targetPage);
+                    if (!targetPage.addNewRecord(record, false)
+                            && this.spillToNextPage(targetPage, record, tableSchema, primaryKeyIndex) == null) {
+                        // page was full and the next page had no room either
+                        this.pageSplit(targetPage, record, tableSchema, primaryKeyIndex);
+                    }
+                    tableSchema.incrementNumRecords();
                 }
             }
         }
@@ -420,6 +777,7 @@ public class StorageManager implements StorageManagerInterface {
             int comparison = lastRecord.compareTo(primaryKey, primaryIndex);
             if (comparison == 0) {
                 // found the record, delete it
+                this.pinForScope(page);
                 Record removed = page.deleteRecord(page.getNumRecords() - 1);
                 return new Pair<Page, Record>(page, removed);
             } else if (comparison > 0) {
@@ -434,20 +792,18 @@ public class StorageManager implements StorageManagerInterface {
 
         if (foundPage == null) {
             MessagePrinter.printMessage(MessageType.ERROR,
-                    String.format("No record of primary key: (%d), was found.",
+                    String.format("No record of primary key: (%s), was found.",
                             primaryKey));
         } else {
             // a page was found but deletion has yet to happen
-            List<Record> recordsInFound = foundPage.getRecords();
-            for (int i = 0; i < recordsInFound.size(); i++) {
-                if (recordsInFound.get(i).compareTo(primaryKey, primaryIndex) == 0) {
-                    Record removed = foundPage.deleteRecord(i);
-                    return new Pair<Page, Record>(foundPage, removed);
-
-                }
+            this.pinForScope(foundPage);
+            int index = foundPage.findRecord(primaryKey, primaryIndex);
+            if (index >= 0) {
+                Record removed = foundPage.deleteRecord(index);
+                return new Pair<Page, Record>(foundPage, removed);
             }
             MessagePrinter.printMessage(MessageType.ERROR,
-                    String.format("No record of primary key: (%d), was found.",
+                    String.format("No record of primary key: (%s), was found.",
                             primaryKey));
         }
         return null;
@@ -455,7 +811,7 @@ public class StorageManager implements StorageManagerInterface {
 
     /**
      * Checks if a page is empty, if it is, delete it from the database
-     * if indexing is on, decrement any pageNumbeers that are affected
+     * and put its page number on the table's free list
      *
      * @param schema The table schema of the table in consideration
      * @param page   The page that was deleted from and may be empty
@@ -463,23 +819,77 @@ public class StorageManager implements StorageManagerInterface {
      */
     private void checkDeletePage(TableSchema schema, Page page) throws Exception {
         if (page.getNumRecords() == 0) {
-            // begin to delete the page by moving all preceding pages up
-            for (int i = 0; i < schema.getNumPages(); i++) {
-                Page foundPage = this.getPage(schema.getTableNumber(), i + 1);
-                if (foundPage.getPageNumber() > page.getPageNumber()) {
-                    foundPage.decrementPageNumber();
-                    foundPage.updateBplusTreeBuckets(0);
-                    schema.setNumPages();
-                }
+            // the empty page no longer exists, its frame must not be written back
+            this.removeFrame(page);
+
+            // the other pages keep their numbers, so neither they nor their
+            // index buckets change, the number is reused by the next new page
+            schema.freePageNumber(page.getPageNumber());
+        }
+    }
+
+    public synchronized Record deleteRecord(int tableNumber, Object primaryKey) throws Exception {
+        this.beginPinScope();
+        try {
+            Record deletedRecord = this.deleteRecordHelper(tableNumber, primaryKey);
+            this.deleteIndexEntries(tableNumber, deletedRecord);
+            return deletedRecord;
+        } finally {
+            this.endPinScope();
+        }
+    }
+
+    /**
+     * Opens a secondary index, starting a new root leaf if the index has no nodes
+     *
+     * @param index The index
+     * @return the B+ tree of the index
+     * @throws Exception
+     */
+    private BPlusTree openIndex(SecondaryIndex index) throws Exception {
+        if (index.getNumIndexPages() == 0) {
+            File indexFile = new File(this.getIndexingPath(index));
+            if (!indexFile.exists()) {
+                indexFile.createNewFile();
+            }
+            LeafNode root = new LeafNode(index.getIndexNumber(), 1, -1);
+            index.incrementNumIndexPages();
+            index.setRoot(1);
+            this.addPageToBuffer(root);
+            return new BPlusTree(index, root);
+        }
+        return new BPlusTree(index, this.getNodePage(index.getIndexNumber(), index.getRootNumber()));
+    }
+
+    /**
+     * Adds the entries of a new record to the secondary indexes of its table
+     */
+    private void insertIndexEntries(int tableNumber, Record record) throws Exception {
+        Catalog catalog = Catalog.getCatalog();
+        TableSchema tableSchema = catalog.getSchema(tableNumber);
+        for (SecondaryIndex index : catalog.getIndexes(tableNumber)) {
+            IndexKey key = index.getKey(tableSchema, record);
+            if (key != null) {
+                this.openIndex(index).insert(key, SecondaryIndex.NO_BUCKET);
             }
+        }
+    }
 
-            // update the pageOrder of the schema
-            schema.deletePageNumber(page.getPageNumber());
-            schema.decrementPageOrder(page.getPageNumber());
+    /**
+     * Removes the entries of a deleted record from the secondary indexes of its table
+     */
+    private void deleteIndexEntries(int tableNumber, Record record) throws Exception {
+        Catalog catalog = Catalog.getCatalog();
+        TableSchema tableSchema = catalog.getSchema(tableNumber);
+        for (SecondaryIndex index : catalog.getIndexes(tableNumber)) {
+            IndexKey key = index.getKey(tableSchema, record);
+            if (key != null && index.getNumIndexPages() > 0) {
+                this.openIndex(index).delete(key);
+            }
         }
     }
 
-    public Record deleteRecord(int tableNumber, Object primaryKey) throws Exception {
+    private Record deleteRecordHelper(int tableNumber, Object primaryKey) throws Exception {
 
         TableSchema schema = Catalog.getCatalog().getSchema(tableNumber);
         Catalog catalog = Catalog.getCatalog();
@@ -493,11 +903,12 @@ public class StorageManager implements StorageManagerInterface {
             Bucket bucket = bPlusTree.search(primaryKey);
             if (bucket == null) {
                 MessagePrinter.printMessage(MessageType.ERROR,
-                        String.format("No record of primary key: (%d), was found.",
+                        String.format("No record of primary key: (%s), was found.",
                                 primaryKey));
             }
             Page foundPage = this.getPage(tableNumber, bucket.getPageNumber());
-            Record removed = foundPage.deleteRecord(bucket.getIndex());
+            this.pinForScope(foundPage);
+            Record removed = foundPage.deleteRecord(foundPage.getRecordIndex(bucket.getRecordId()));
             deletedPair = new Pair<Page, Record>(foundPage, removed);
             bPlusTree.delete(primaryKey);
         } else {
@@ -511,7 +922,7 @@ public class StorageManager implements StorageManagerInterface {
         return deletedRecord;
     }
 
-    public void updateRecord(int tableNumber, Record newRecord, Object primaryKey) throws Exception {
+    public synchronized void updateRecord(int tableNumber, Record newRecord, Object primaryKey) throws Exception {
 
         Record oldRecord = deleteRecord(tableNumber, primaryKey); // if the delete was successful then deletePage !=
                                                                   // null
@@ -535,19 +946,29 @@ public class StorageManager implements StorageManagerInterface {
      *
      * @param tableNumber - the tablenumber for the table we are removing
      */
-    public void dropTable(int tableNumber) {
+    public synchronized void dropTable(int tableNumber) {
 
         // Checks the hardware for a tablefile. If it finds it remove it.
         String tablePath = this.getTablePath(tableNumber);
         File tableFile = new File(tablePath);
         String indexPath = this.getIndexingPath(tableNumber);
         File indexFile = new File(indexPath);
+        File freeSpaceMapFile = new File(this.getFreeSpaceMapPath(tableNumber));
         try {
+            // close cached handles first so nothing is written to the deleted files
+            this.fileManager.closeFile(tablePath);
+            this.fileManager.closeFile(indexPath);
+
             // if its on the file system remove it.
             if (tableFile.exists()) {
                 tableFile.delete();
             }
 
+            this.freeSpaceMaps.remove(tableNumber);
+            if (freeSpaceMapFile.exists()) {
+                freeSpaceMapFile.delete();
+            }
+
             // if BPlus exists, drop it
             if (indexFile.exists()) {
                 indexFile.delete();
@@ -555,14 +976,14 @@ public class StorageManager implements StorageManagerInterface {
 
             // for every page in the buffer that has this table number, remove it.
             List<BufferPage> toRemove = new ArrayList<>();
-            for (BufferPage page : this.buffer) {
+            for (BufferPage page : this.frameTable.values()) {
                 if (tableNumber == page.getTableNumber()) {
                     toRemove.add(page);
                 }
             }
 
             for (BufferPage page : toRemove) {
-                this.buffer.remove(page);
+                this.removeFrame(page);
             }
 
         } catch (Exception e) {
@@ -582,7 +1003,7 @@ public class StorageManager implements StorageManagerInterface {
      * @return - null
      * @throws Exception
      */
-    public Exception alterTable(int tableNumber, String op, String attrName, Object val, String isDeflt,
+    public synchronized Exception alterTable(int tableNumber, String op, String attrName, Object val, String isDeflt,
             List<AttributeSchema> attrList) throws Exception {
         Catalog catalog = Catalog.getCatalog();
         TableSchema currentSchemea = catalog.getSchema(tableNumber);
@@ -596,11 +1017,17 @@ public class StorageManager implements StorageManagerInterface {
         // determine value to add in the new column and add it
         Object newVal = isDeflt.equals("true") ? val : null;
 
+        if (op.equals("add") && newVal != null && attrList.get(attrList.size() - 1).isUnique() && oldRecords.size() > 1) {
+            MessagePrinter.printMessage(MessageType.ERROR, String.format(
+                    "Alter would give %d records the same value for unique attribute %s. Aborting alter...",
+                    oldRecords.size(), attrName));
+        }
+
         for (Record record : oldRecords) {
             if (op.equals("add")) {
                 // if add col, add the new value to the record
                 record.addValue(newVal);
-                if (record.computeSize() > (catalog.getPageSize() - (Integer.BYTES * 2))) {
+                if (record.computeSize() > Page.getMaxRecordSize(catalog.getPageSize())) {
                     MessagePrinter.printMessage(MessageType.ERROR,
                             "Alter will cause a record to be greater than the page size. Aborting alter...");
                 }
@@ -620,178 +1047,664 @@ public class StorageManager implements StorageManagerInterface {
             newRecords.add(record);
         }
 
-        // drop old table and create new one
+        // drop old table and create new one, the indexes of the table are dropped with it
+        List<SecondaryIndex> indexes = catalog.getIndexes(tableNumber);
         catalog.dropTableSchema(tableNumber);
+
+        // created indexes come back unless their attribute was dropped, they keep their numbers
+        // so they go back before the new table makes the unique indexes of its attributes
+        for (SecondaryIndex index : indexes) {
+            if (!index.isUnique() && index.getAttributeIndex(newSchema) >= 0) {
+                catalog.addIndex(index);
+            }
+        }
         catalog.createTable(newSchema);
 
-        for (Record record : newRecords) {
-            this.insertRecord(tableNumber, record);
+        // the records are still in key order
+        this.loadSortedRecords(tableNumber, newRecords);
+
+        for (SecondaryIndex index : catalog.getIndexes(tableNumber)) {
+            this.buildIndex(index);
         }
 
         return null;
     }
 
+    /**
+     * Fills new pages of an empty table with records already in key order,
+     * one page after the other, then builds the index of the table in one go
+     * rather than inserting the keys one at a time
+     *
+     * @param tableNumber   The number of the table
+     * @param records       The records, ascending by primary key
+     * @throws Exception
+     */
+    private void loadSortedRecords(int tableNumber, List<Record> records) throws Exception {
+        if (records.isEmpty()) {
+            return;
+        }
+        Catalog catalog = Catalog.getCatalog();
+        TableSchema tableSchema = catalog.getSchema(tableNumber);
+        new File(this.getTablePath(tableNumber)).createNewFile();
+
+        Page page = null;
+        for (Record record : records) {
+            if (page == null || !page.addNewRecord(record, false)) {
+                // the page is filled before it goes into the buffer, it is not touched once the next one starts
+                page = new Page(0, tableNumber, tableSchema.allocatePageNumber());
+                tableSchema.addPageNumber(page.getPageNumber());
+                page.addNewRecord(record, false);
+                this.addPageToBuffer(page);
+            }
+            tableSchema.incrementNumRecords();
+        }
+
+        if (catalog.isIndexingOn()) {
+            this.buildIndex(tableNumber);
+        }
+    }
+
+    /**
+     * Builds the index of a table from its pages bottom-up, replacing any index it had.
+     * The pages are read in key order and the nodes are laid out level by level, the
+     * leaves first and each level of internal nodes after the level below it, so the
+     * index file is written front to back in one pass. Nodes are filled up to the
+     * index fill factor, leaving room for inserts before they split.
+     *
+     * @param tableNumber   The number of the table
+     * @throws Exception
+     */
+    public synchronized void buildIndex(int tableNumber) throws Exception {
+        Catalog catalog = Catalog.getCatalog();
+        TableSchema tableSchema = catalog.getSchema(tableNumber);
+        int primaryIndex = tableSchema.getPrimaryIndex();
+
+        this.dropIndex(tableSchema);
+
+        List<Object> keys = new ArrayList<>();
+        List<Bucket> buckets = new ArrayList<>();
+        for (int pageNumber : tableSchema.getPageOrder()) {
+            Page page = this.getPage(tableNumber, pageNumber);
+            for (int i = 0; i < page.getNumRecords(); i++) {
+                keys.add(page.getRecord(i).getValue(primaryIndex));
+                buckets.add(new Bucket(pageNumber, page.getRecordId(i)));
+            }
+        }
+        this.writeIndex(tableSchema, keys, buckets);
+    }
+
+    /**
+     * Builds a secondary index from the records of its table, replacing any nodes it had.
+     * The entries are sorted by value and laid out the same way as a primary key index
+     *
+     * @param index The index
+     * @throws Exception
+     */
+    public synchronized void buildIndex(SecondaryIndex index) throws Exception {
+        Catalog catalog = Catalog.getCatalog();
+        TableSchema tableSchema = catalog.getSchema(index.getTableNumber());
+
+        this.dropIndex(index);
+
+        List<IndexKey> keys = new ArrayList<>();
+        for (int pageNumber : tableSchema.getPageOrder()) {
+            Page page = this.getPage(tableSchema.getTableNumber(), pageNumber);
+            for (int i = 0; i < page.getNumRecords(); i++) {
+                IndexKey key = index.getKey(tableSchema, page.getRecord(i));
+                if (key != null) {
+                    keys.add(key);
+                }
+            }
+        }
+        keys.sort(null);
+        this.writeIndex(index, new ArrayList<Object>(keys), Collections.nCopies(keys.size(), SecondaryIndex.NO_BUCKET));
+    }
+
+    /**
+     * Drops the nodes of an index from the buffer without writing them and deletes
+     * the index file, the index has no nodes afterwards
+     *
+     * @param index The index
+     * @throws Exception
+     */
+    public synchronized void dropIndex(IndexSchema index) throws Exception {
+        String indexPath = this.getIndexingPath(index);
+        List<BufferPage> oldNodes = new ArrayList<>();
+        for (BufferPage page : this.frameTable.values()) {
+            if (page instanceof Node && page.getTableNumber() == index.getIndexNumber()) {
+                oldNodes.add(page);
+            }
+        }
+        for (BufferPage node : oldNodes) {
+            this.removeFrame(node);
+        }
+        this.fileManager.closeFile(indexPath);
+        File indexFile = new File(indexPath);
+        if (indexFile.exists()) {
+            indexFile.delete();
+        }
+        index.setRoot(1);
+        index.setNumIndexPages(0);
+    }
+
+    /**
+     * Writes the nodes of an index holding the given entries, the index has no nodes before
+     *
+     * @param index     The index
+     * @param keys      The keys, ascending
+     * @param buckets   The bucket of each key
+     * @throws Exception
+     */
+    private void writeIndex(IndexSchema index, List<Object> keys, List<Bucket> buckets) throws Exception {
+        if (keys.isEmpty()) {
+            // an empty index gets its first node with its first entry
+            return;
+        }
+        int indexNumber = index.getIndexNumber();
+        String indexPath = this.getIndexingPath(index);
+
+        // work out how many nodes each level has and how many entries each node takes
+        BPlusTree tree = new BPlusTree(index, null);
+        List<int[]> levels = new ArrayList<>();
+        levels.add(nodeSizes(keys.size(), tree.getMaxKeysPerNode(), tree.getMinKeysPerNode()));
+        while (levels.get(levels.size() - 1).length > 1) {
+            int children = levels.get(levels.size() - 1).length;
+            levels.add(nodeSizes(children, tree.getMaxChildrenPerNode(), tree.getMinKeysPerNode() + 1));
+        }
+        int[] levelStart = new int[levels.size() + 1];
+        levelStart[0] = 1;
+        for (int level = 0; level < levels.size(); level++) {
+            levelStart[level + 1] = levelStart[level] + levels.get(level).length;
+        }
+        int numNodes = levelStart[levels.size()] - 1;
+        index.setNumIndexPages(numNodes);
+        new File(indexPath).createNewFile();
+
+        List<BufferPage> run = new ArrayList<>();
+        // the smallest key under each node of the level just written, the separators of the level above
+        List<Object> firstKeys = new ArrayList<>();
+        int entry = 0;
+        for (int level = 0; level < levels.size(); level++) {
+            int[] sizes = levels.get(level);
+            int[] parents = levels.size() > level + 1 ? levels.get(level + 1) : null;
+            List<Object> levelFirstKeys = new ArrayList<>(sizes.length);
+            int child = 0;
+            int parent = 0;
+            int childrenLeft = parents == null ? 0 : parents[0];
+            for (int i = 0; i < sizes.length; i++) {
+                int pageNumber = levelStart[level] + i;
+                int parentPageNumber = parents == null ? -1 : levelStart[level + 1] + parent;
+                Node node;
+                if (level == 0) {
+                    LeafNode leaf = new LeafNode(indexNumber, pageNumber, parentPageNumber);
+                    leaf.setNextLeafPageNumber(i + 1 < sizes.length ? pageNumber + 1 : -1);
+                    levelFirstKeys.add(keys.get(entry));
+                    for (int k = 0; k < sizes[i]; k++, entry++) {
+                        leaf.appendEntry(keys.get(entry), buckets.get(entry));
+                    }
+                    node = leaf;
+                } else {
+                    InternalNode internalNode = new InternalNode(indexNumber, pageNumber, parentPageNumber);
+                    levelFirstKeys.add(firstKeys.get(child));
+                    for (int k = 0; k < sizes[i]; k++, child++) {
+                        internalNode.appendChild(firstKeys.get(child), levelStart[level - 1] + child);
+                    }
+                    node = internalNode;
+                }
+                if (parents != null && --childrenLeft == 0 && ++parent < parents.length) {
+                    childrenLeft = parents[parent];
+                }
+
+                run.add(node);
+                if (run.size() == EXTENT_SLOTS) {
+                    this.writeFileFrames(run);
+                    run.clear();
+                }
+            }
+            firstKeys = levelFirstKeys;
+        }
+        if (!run.isEmpty()) {
+            this.writeFileFrames(run);
+        }
+        index.setRoot(numNodes);
+    }
+
+    /**
+     * Spreads entries evenly over as few nodes as hold them at the index fill factor,
+     * without leaving a node under the minimum a node other than the root must hold
+     *
+     * @param numEntries    The number of keys of a leaf level, or of children of an internal level
+     * @param maxEntries    The most entries a node holds
+     * @param minEntries    The fewest entries a node other than the root holds
+     * @return the number of entries of each node
+     */
+    private int[] nodeSizes(int numEntries, int maxEntries, int minEntries) {
+        int perNode = Math.max(minEntries, Math.min(maxEntries, (int) (maxEntries * this.indexFillFactor)));
+        int numNodes = (numEntries + perNode - 1) / perNode;
+        while (numNodes > 1 && numEntries / numNodes < minEntries) {
+            numNodes--;
+        }
+        int[] sizes = new int[numNodes];
+        for (int i = 0; i < numNodes; i++) {
+            sizes[i] = numEntries / numNodes + (i < numEntries % numNodes ? 1 : 0);
+        }
+        return sizes;
+    }
+
     // ---------------------------- Page Buffer ------------------------------
 
-    private BufferPage getLastPageInBuffer(PriorityQueue<BufferPage> buffer) {
-        Object[] bufferArray = buffer.toArray();
-        return ((BufferPage) bufferArray[bufferArray.length - 1]);
+    /**
+     * Opens a pin scope. Until the matching endPinScope every node read through
+     * getNodePage, every page added to the buffer and every page passed to
+     * pinForScope stays pinned, so a frame that is still being mutated is never
+     * evicted and re-read as a stale copy. Scopes nest.
+     */
+    public synchronized void beginPinScope() {
+        this.pinScopes.push(this.scopePins.size());
+    }
+
+    /**
+     * Closes the innermost pin scope and unpins every page pinned inside it
+     */
+    public synchronized void endPinScope() {
+        int mark = this.pinScopes.pop();
+        while (this.scopePins.size() > mark) {
+            this.scopePins.remove(this.scopePins.size() - 1).unpin();
+        }
+    }
+
+    /**
+     * Pins a page until the innermost pin scope closes,
+     * does nothing when no scope is open
+     *
+     * @param page The page to pin
+     */
+    public synchronized void pinForScope(BufferPage page) {
+        if (!this.pinScopes.isEmpty()) {
+            page.pin();
+            this.scopePins.add(page);
+        }
+    }
+
+    /**
+     * Removes a frame from the buffer without writing it to hardware
+     *
+     * @param page The page to drop from the buffer
+     */
+    private void removeFrame(BufferPage page) {
+        if (this.frameTable.get(page.getFrameKey()) == page) {
+            this.frameTable.remove(page.getFrameKey());
+        }
+        this.replacementPolicy.remove(page);
     }
 
     @Override
-    public Page getPage(int tableNumber, int pageNumber) throws Exception {
+    public synchronized Page getPage(int tableNumber, int pageNumber) throws Exception {
         // check if page is in buffer
-        for (int i = this.buffer.size() - 1; i >= 0; i--) {
-            Object[] bufferArray = this.buffer.toArray();
-            BufferPage page = (BufferPage) bufferArray[i];
-            if (page instanceof Page && page.getTableNumber() == tableNumber && page.getPageNumber() == pageNumber) {
-                page.setPriority();
-                return (Page) page;
-            }
+        BufferPage page = this.frameTable.get(new FrameKey(tableNumber, pageNumber, false));
+        if (page != null) {
+            this.bufferHits++;
+            this.replacementPolicy.touch(page);
+            return (Page) page;
         }
 
         // read page from hardware into buffer
-        readPageHardware(tableNumber, pageNumber);
-        return (Page) getLastPageInBuffer(this.buffer);
+        this.bufferMisses++;
+        return readPageHardware(tableNumber, pageNumber);
     }
 
-    public Node getNodePage(int tableNumber, int pageNumber) throws Exception {
+    public synchronized Node getNodePage(int tableNumber, int pageNumber) throws Exception {
         // Check if the node is in buffer
-        for (int i = this.buffer.size() - 1; i >= 0; i--) {
-            Object[] bufferArray = this.buffer.toArray();
-            BufferPage page = (BufferPage) bufferArray[i];
-            if (page instanceof Node && page.getTableNumber() == tableNumber && page.getPageNumber() == pageNumber) {
-                page.setPriority();
-                return (Node) page;
-            }
+        BufferPage page = this.frameTable.get(new FrameKey(tableNumber, pageNumber, true));
+        if (page != null) {
+            this.bufferHits++;
+            this.replacementPolicy.touch(page);
+            this.pinForScope(page);
+            return (Node) page;
         }
 
         // If not in buffer, read the node from hardware
-        readNodePageHardware(tableNumber, pageNumber);
-        return (Node) getLastPageInBuffer(this.buffer);
+        this.bufferMisses++;
+        Node node = readNodePageHardware(tableNumber, pageNumber);
+        this.pinForScope(node);
+        return node;
     }
 
-    private void readNodePageHardware(int tableNumber, int pageNumber) throws Exception {
+    private Node readNodePageHardware(int tableNumber, int pageNumber) throws Exception {
         Catalog catalog = Catalog.getCatalog();
-        int nodeSize = catalog.getSchema(tableNumber).computeSizeOfNode(catalog);
-        TableSchema tableSchema = catalog.getSchema(tableNumber);
-        String filePath = this.getIndexingPath(tableNumber);
-        File indexFile = new File(filePath);
-        RandomAccessFile tableAccessFile = new RandomAccessFile(indexFile, "r");
+        IndexSchema index = catalog.getIndexSchema(tableNumber);
+        TableSchema tableSchema = catalog.getSchema(index.getTableNumber());
+        int nodeSize = index.computeSizeOfNode(catalog);
         int pageIndex = pageNumber - 1;
 
-        tableAccessFile.seek(Integer.BYTES + (nodeSize * pageIndex));
-        int pageNum = tableAccessFile.readInt();
-        boolean isLeaf = tableAccessFile.readBoolean();
-        int parentPageNumber = tableAccessFile.readInt();
+        ByteBuffer buffer = this.readBlock(this.getIndexingPath(index), Integer.BYTES + ((long) nodeSize * pageIndex), nodeSize);
+        int pageNum = buffer.getInt();
+        boolean isLeaf = buffer.get() != 0;
+        int parentPageNumber = buffer.getInt();
         if (pageNum != pageNumber)
             MessagePrinter.printMessage(MessageType.ERROR, "Page Number read does not match requested");
 
+        Node node;
         if (isLeaf) {
-            LeafNode leafNode = new LeafNode(tableNumber, pageNumber, parentPageNumber);
-            leafNode.readFromHardware(tableAccessFile, tableSchema);
-            this.addPageToBuffer(leafNode);
+            node = new LeafNode(tableNumber, pageNumber, parentPageNumber);
         } else {
-            InternalNode internalNode = new InternalNode(tableNumber, pageNumber, parentPageNumber);
-            internalNode.readFromHardware(tableAccessFile, tableSchema);
-            this.addPageToBuffer(internalNode);
+            node = new InternalNode(tableNumber, pageNumber, parentPageNumber);
         }
-        tableAccessFile.close();
+        node.readFromHardware(buffer, tableSchema);
+        this.placeInBuffer(node);
+        return node;
     }
 
-    private void readPageHardware(int tableNumber, int pageNumber) throws Exception {
+    private Page readPageHardware(int tableNumber, int pageNumber) throws Exception {
         Catalog catalog = Catalog.getCatalog();
         TableSchema tableSchema = catalog.getSchema(tableNumber);
-        String filePath = this.getTablePath(tableNumber);
-        File tableFile = new File(filePath);
-        RandomAccessFile tableAccessFile = new RandomAccessFile(tableFile, "r");
         int pageIndex = pageNumber - 1;
 
-        tableAccessFile.seek(Integer.BYTES + (catalog.getPageSize() * pageIndex)); // start after numPages
-        int numRecords = tableAccessFile.readInt();
-        int pageNum = tableAccessFile.readInt();
+        // start after numPages
+        ByteBuffer buffer = this.readBlock(this.getTablePath(tableNumber), Integer.BYTES + ((long) catalog.getPageSize() * pageIndex),
+                catalog.getPageSize());
+        int numRecords = buffer.getInt();
+        int pageNum = buffer.getInt();
         if (pageNum != pageNumber)
             MessagePrinter.printMessage(MessageType.ERROR, "Page Number read does not match requested");
         Page page = new Page(numRecords, tableNumber, pageNum);
-        page.readFromHardware(tableAccessFile, tableSchema);
-        this.addPageToBuffer(page);
-        tableAccessFile.close();
+        page.readFromHardware(buffer, tableSchema);
+        this.placeInBuffer(page);
+        return page;
+    }
+
+    /**
+     * Writes frames to hardware and marks them as unchanged
+     * Frames are grouped by file and sorted by page number, so each file is
+     * written front to back and its header is written at most once.
+     * Frames in adjacent slots are written together with one gathering write
+     *
+     * @param pages The pages and nodes to write, reordered in place
+     */
+    private void writeFrames(List<BufferPage> pages) throws Exception {
+        pages.sort(WRITE_ORDER);
+        int start = 0;
+        while (start < pages.size()) {
+            FrameKey first = pages.get(start).getFrameKey();
+            int end = start + 1;
+            while (end < pages.size()) {
+                FrameKey next = pages.get(end).getFrameKey();
+                if (next.getTableNumber() != first.getTableNumber() || next.isIndexPage() != first.isIndexPage()) {
+                    break;
+                }
+                end++;
+            }
+            this.writeFileFrames(pages.subList(start, end));
+            start = end;
+        }
     }
 
-    private void writeNodePageHardware(BufferPage page) throws Exception {
+    /**
+     * Writes frames of one table or index file, sorted by page number
+     */
+    private void writeFileFrames(List<BufferPage> pages) throws Exception {
+        BufferPage first = pages.get(0);
         Catalog catalog = Catalog.getCatalog();
-        int nodeSize = catalog.getSchema(page.getTableNumber()).computeSizeOfNode(catalog);
-        TableSchema tableSchema = catalog.getSchema(page.getTableNumber());
-        String filePath = this.getIndexingPath(page.getTableNumber());
-        File indexFile = new File(filePath);
-        RandomAccessFile tableAccessFile = new RandomAccessFile(indexFile, "rw");
-        tableAccessFile.writeInt(tableSchema.getNumIndexPages());
-        int nodeIndex = page.getPageNumber() - 1;
+        String path;
+        int slotSize;
+        if (first instanceof Page) {
+            TableSchema tableSchema = catalog.getSchema(first.getTableNumber());
+            if (tableSchema == null) {
+                this.skipFrames(pages);
+                return;
+            }
+            path = this.getTablePath(first.getTableNumber());
+            // the page fills its whole slot in the table file
+            slotSize = catalog.getPageSize();
+            this.fileManager.writeHeader(path, tableSchema.getNumPageSlots());
+        } else if (first instanceof Node) {
+            // nodes are buffered under the number of their index
+            IndexSchema index = catalog.getIndexSchema(first.getTableNumber());
+            if (index == null) {
+                this.skipFrames(pages);
+                return;
+            }
+            path = this.getIndexingPath(index);
+            slotSize = index.computeSizeOfNode(catalog);
+            this.fileManager.writeHeader(path, index.getNumIndexPages());
+        } else {
+            MessagePrinter.printMessage(MessageType.ERROR, "Unknown BufferPage type: writeFrames");
+            return;
+        }
 
-        tableAccessFile.seek(tableAccessFile.getFilePointer() + (nodeSize * nodeIndex));
+        List<ByteBuffer> run = new ArrayList<>();
+        int runStart = first.getPageNumber();
+        for (BufferPage page : pages) {
+            if (!run.isEmpty() && page.getPageNumber() != runStart + run.size()) {
+                this.writeRun(path, runStart, slotSize, run);
+            }
+            if (run.isEmpty()) {
+                runStart = page.getPageNumber();
+            }
+            run.add(this.encodeBlock(page, slotSize));
+        }
+        if (!run.isEmpty()) {
+            this.writeRun(path, runStart, slotSize, run);
+        }
+        if (first instanceof Page) {
+            FreeSpaceMap freeSpaceMap = this.getFreeSpaceMap(first.getTableNumber());
+            for (BufferPage page : pages) {
+                freeSpaceMap.setFreeBytes(page.getPageNumber(), ((Page) page).getFreeBytes());
+            }
+        }
+        for (BufferPage page : pages) {
+            page.clearChanged();
+        }
+    }
 
-        Random random = new Random();
-        byte[] buffer = new byte[nodeSize];
-        random.nextBytes(buffer);
-        tableAccessFile.write(buffer, 0, nodeSize);
-        tableAccessFile.seek(tableAccessFile.getFilePointer() - nodeSize);
+    /**
+     * Marks the frames of a file that has been dropped as written, there is nowhere left to write them
+     */
+    private void skipFrames(List<BufferPage> pages) {
+        for (BufferPage page : pages) {
+            page.clearChanged();
+        }
+    }
 
-        page.writeToHardware(tableAccessFile);
-        tableAccessFile.close();
+    /**
+     * Writes blocks of consecutive slots starting at a page number, then empties the run
+     */
+    private void writeRun(String path, int pageNumber, int slotSize, List<ByteBuffer> run) throws Exception {
+        long position = Integer.BYTES + ((long) slotSize * (pageNumber - 1));
+        this.fileManager.writeBlocks(path, position, run.toArray(new ByteBuffer[0]), (long) slotSize * EXTENT_SLOTS);
+        run.clear();
     }
 
-    private void writePageHardware(BufferPage page) throws Exception {
-        Catalog catalog = Catalog.getCatalog();
-        TableSchema tableSchema = catalog.getSchema(page.getTableNumber());
-        String filePath = this.getTablePath(page.getTableNumber());
-        File tableFile = new File(filePath);
-        RandomAccessFile tableAccessFile = new RandomAccessFile(tableFile, "rw");
-        tableAccessFile.writeInt(tableSchema.getNumPages());
-        int pageIndex = page.getPageNumber() - 1;
-
-        // Go to the point where the page is in the file
-        tableAccessFile.seek(tableAccessFile.getFilePointer() + (catalog.getPageSize() * pageIndex));
-
-        // Allocate space for a Page in the table file
-        Random random = new Random();
-        byte[] buffer = new byte[catalog.getPageSize()];
-        random.nextBytes(buffer);
-        tableAccessFile.write(buffer, 0, catalog.getPageSize());
-        tableAccessFile.seek(tableAccessFile.getFilePointer() - catalog.getPageSize()); // move pointer back
-
-        page.writeToHardware(tableAccessFile);
-        tableAccessFile.close();
-    }
-
-    public void addPageToBuffer(BufferPage page) throws Exception {
-        if (this.buffer.size() == this.bufferSize) {
-            BufferPage lruPage = this.buffer.poll(); // assuming the first Page in the buffer is LRU
-            if (lruPage.isChanged()) {
-                if (lruPage instanceof Page) {
-                    this.writePageHardware(lruPage);
-                } else if (lruPage instanceof Node) {
-                    this.writeNodePageHardware(lruPage);
-                } else {
-                    MessagePrinter.printMessage(MessageType.ERROR, "Unknown BufferPage type: addPageToBuffer");
-                }
+    /**
+     * Gets the reusable I/O buffer, cleared and limited to the given size
+     *
+     * @param size The number of bytes needed
+     * @return The buffer, zero filled up to its limit
+     */
+    private ByteBuffer ioBuffer(int size) {
+        if (this.ioBuffer == null || this.ioBuffer.capacity() < size) {
+            this.ioBuffer = ByteBuffer.allocate(size);
+        } else {
+            Arrays.fill(this.ioBuffer.array(), 0, size, (byte) 0);
+        }
+        this.ioBuffer.clear();
+        this.ioBuffer.limit(size);
+        return this.ioBuffer;
+    }
+
+    /**
+     * Reads one block, from the file's mapping or with positional reads
+     * Bytes past the end of the file read as zero
+     *
+     * @return A buffer positioned at the start of the block
+     */
+    private ByteBuffer readBlock(String path, long position, int size) throws Exception {
+        return this.fileManager.readBlock(path, position, this.ioBuffer(size));
+    }
+
+    /**
+     * Encodes a page or node into a block of its own, the size of its slot
+     *
+     * @return The block, positioned at its start
+     */
+    private ByteBuffer encodeBlock(BufferPage page, int slotSize) throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(slotSize);
+        try {
+            page.writeToHardware(buffer);
+        } catch (BufferOverflowException e) {
+            // slots count a byte a character, a string key of wider characters can outgrow its node
+            MessagePrinter.printMessage(MessageType.ERROR, String.format(
+                    "Page %d of %d does not fit in its %d byte slot", page.getPageNumber(), page.getTableNumber(),
+                    slotSize));
+        }
+        buffer.position(0);
+        return buffer;
+    }
+
+    /**
+     * Adds a newly created page to the buffer,
+     * inside a pin scope the page stays pinned until the scope closes
+     *
+     * @param page The page to add
+     */
+    public synchronized void addPageToBuffer(BufferPage page) throws Exception {
+        this.placeInBuffer(page);
+        this.pinForScope(page);
+    }
+
+    private void placeInBuffer(BufferPage page) throws Exception {
+        BufferPage stalePage = this.frameTable.get(page.getFrameKey());
+        if (stalePage != null) {
+            // a newer copy of this page replaces the one held in the buffer
+            this.removeFrame(stalePage);
+        }
+
+        List<BufferPage> dirtyVictims = new ArrayList<>();
+        while (this.frameTable.size() >= this.bufferSize) {
+            BufferPage victim = this.replacementPolicy.evict();
+            if (victim == null) {
+                // every frame is pinned, overcommit until the pins are released
+                break;
             }
+            this.frameTable.remove(victim.getFrameKey());
+            if (victim.isChanged()) {
+                dirtyVictims.add(victim);
+            }
+        }
+        if (!dirtyVictims.isEmpty()) {
+            this.writeFrames(dirtyVictims);
         }
-        this.buffer.add(page);
+        this.frameTable.put(page.getFrameKey(), page);
+        this.replacementPolicy.admit(page);
     }
 
-    public void writeAll() throws Exception {
-        for (BufferPage page : buffer) {
+    /**
+     * Starts the background writer that keeps the share of changed frames
+     * in the buffer between the two ratios
+     *
+     * @param lowRatio  The dirty ratio the writer flushes down to
+     * @param highRatio The dirty ratio above which the writer starts flushing,
+     *                  1 disables it
+     */
+    public void startDirtyPageWriter(double lowRatio, double highRatio) throws Exception {
+        if (lowRatio < 0 || highRatio > 1 || lowRatio >= highRatio) {
+            MessagePrinter.printMessage(MessageType.ERROR,
+                    String.format("Invalid dirty ratios: low %s must be below high %s, both within 0 and 1",
+                            lowRatio, highRatio));
+        }
+        if (highRatio < 1) {
+            this.dirtyPageWriter = new DirtyPageWriter(this, lowRatio, highRatio);
+            this.dirtyPageWriter.start();
+        }
+    }
+
+    /**
+     * Sets how full buildIndex fills the nodes it lays out
+     *
+     * @param fillFactor    The share of the entries a node can hold, above 0 and at most 1
+     */
+    public void setIndexFillFactor(double fillFactor) throws Exception {
+        if (fillFactor <= 0 || fillFactor > 1) {
+            MessagePrinter.printMessage(MessageType.ERROR,
+                    String.format("Invalid index fill factor %s, it must be above 0 and at most 1", fillFactor));
+        }
+        this.indexFillFactor = fillFactor;
+    }
+
+    /**
+     * @return the share of the buffer's frames holding changes not yet written to hardware
+     */
+    synchronized double getDirtyRatio() {
+        int dirty = 0;
+        for (BufferPage page : this.frameTable.values()) {
             if (page.isChanged()) {
-                if (page instanceof Page) {
-                    writePageHardware(page);
-                } else if (page instanceof Node) {
-                    writeNodePageHardware(page);
-                } else {
-                    MessagePrinter.printMessage(MessageType.ERROR, "Unknown BufferPage type: addPageToBuffer");
+                dirty++;
+            }
+        }
+        return (double) dirty / this.bufferSize;
+    }
+
+    /**
+     * Writes changed frames that are not pinned to hardware, they stay in the buffer
+     *
+     * @param limit The maximum number of frames to write
+     * @return the number of frames written
+     */
+    synchronized int writeDirtyPages(int limit) throws Exception {
+        List<BufferPage> dirtyPages = new ArrayList<>();
+        for (BufferPage page : this.frameTable.values()) {
+            if (dirtyPages.size() == limit) {
+                break;
+            }
+            if (page.isChanged() && !page.isPinned()) {
+                dirtyPages.add(page);
+            }
+        }
+        this.writeFrames(dirtyPages);
+        return dirtyPages.size();
+    }
+
+    public void writeAll() throws Exception {
+        if (this.dirtyPageWriter != null) {
+            // stop the writer first, it must not touch frames that are being purged
+            this.dirtyPageWriter.shutdown();
+            this.dirtyPageWriter = null;
+        }
+        synchronized (this) {
+            List<BufferPage> dirtyPages = new ArrayList<>();
+            for (BufferPage page : this.frameTable.values()) {
+                if (page.isChanged()) {
+                    dirtyPages.add(page);
                 }
             }
+            this.writeFrames(dirtyPages);
+            this.frameTable.clear();
+            this.replacementPolicy.clear();
+            for (Map.Entry<Integer, FreeSpaceMap> entry : this.freeSpaceMaps.entrySet()) {
+                if (entry.getValue().isChanged()) {
+                    entry.getValue().save(this.getFreeSpaceMapPath(entry.getKey()));
+                }
+            }
+            this.fileManager.closeAll();
         }
-        this.buffer.removeAll(buffer);
+    }
+
+    public String getBufferPolicyName() {
+        return this.replacementPolicy.getName();
+    }
+
+    /**
+     * @return the number of page and node requests served from the buffer
+     */
+    public synchronized long getBufferHits() {
+        return this.bufferHits;
+    }
+
+    /**
+     * @return the number of page and node requests that had to be read from hardware
+     */
+    public synchronized long getBufferMisses() {
+        return this.bufferMisses;
     }
 
 }
@@ -1,12 +1,12 @@
 package StorageManager;
 
-import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 
 public interface StorageManagerObjectIntereface {
 
-  public void writeToHardware(RandomAccessFile tableAccessFile) throws Exception;
+  public void writeToHardware(ByteBuffer buffer) throws Exception;
 
-  public void readFromHardware(RandomAccessFile tableAccessFile, TableSchema tableSchema) throws Exception;
+  public void readFromHardware(ByteBuffer buffer, TableSchema tableSchema) throws Exception;
 
   public int computeSize();
 
@@ -0,0 +1,61 @@
+package StorageManager;
+
+import java.util.List;
+
+import StorageManager.Objects.Page;
+import StorageManager.Objects.Record;
+
+/**
+ * Walks the records of a table in key order a page at a time, only the page
+ * the cursor is on is held, the others are read through the buffer as it
+ * reaches them. The table must not change while a cursor is open on it.
+ */
+public class TableCursor {
+  private int tableNumber;
+  private List<Integer> pageOrder;
+  private int pageIndex;
+  private Page page;
+  private int position;
+
+  TableCursor(int tableNumber, List<Integer> pageOrder) throws Exception {
+    this.tableNumber = tableNumber;
+    this.pageOrder = pageOrder;
+    this.pageIndex = -1;
+    this.position = 0;
+    skipToRecord();
+  }
+
+  /**
+   * @return whether the cursor is at a record, false once it is past the last one
+   */
+  public boolean hasRecord() {
+    return page != null;
+  }
+
+  public Record getRecord() {
+    return page.getRecord(position);
+  }
+
+  /**
+   * Moves to the next record
+   */
+  public void next() throws Exception {
+    position++;
+    skipToRecord();
+  }
+
+  /**
+   * Moves on to the next page while the cursor is past the last record of its page
+   */
+  private void skipToRecord() throws Exception {
+    while (page == null || position >= page.getNumRecords()) {
+      pageIndex++;
+      position = 0;
+      if (pageIndex >= pageOrder.size()) {
+        page = null;
+        return;
+      }
+      page = StorageManager.getStorageManager().getPage(tableNumber, pageOrder.get(pageIndex));
+    }
+  }
+}
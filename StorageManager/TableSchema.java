@@ -2,6 +2,7 @@ package StorageManager;
 
 import java.io.RandomAccessFile;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -11,17 +12,23 @@ import StorageManager.Objects.AttributeSchema;
 import StorageManager.Objects.Catalog;
 import StorageManager.Objects.MessagePrinter;
 import StorageManager.Objects.MessagePrinter.MessageType;
+import StorageManager.Objects.NodeKeys;
+import StorageManager.Objects.Record;
 import StorageManager.Objects.SchemaInterface;
 
-public class TableSchema implements SchemaInterface {
+public class TableSchema implements SchemaInterface, IndexSchema {
   private int tableNumber;
   private String tableName;
   private List<AttributeSchema> attributes;
   private int numPages;
   private List<Integer> pageOrder;
+  // page numbers of deleted pages, reused before the table file grows
+  private List<Integer> freePages;
   private int numRecords;
   private int indexRootNumber;
   private int numIndexPages;
+  // built on first use, dropped whenever the attributes change
+  private Comparator<Record> recordComparator;
 
   public TableSchema(String tableName, int tableNumber) {
     this.tableName = tableName;
@@ -29,6 +36,7 @@ public class TableSchema implements SchemaInterface {
     this.numPages = 0;
     this.numIndexPages = 0;
     this.pageOrder = new ArrayList<Integer>();
+    this.freePages = new ArrayList<Integer>();
     this.numRecords = 0;
     this.attributes = new ArrayList<AttributeSchema>();
     this.indexRootNumber = -1; // initialize to -1 in the case that there is no current B+ tree
@@ -40,6 +48,7 @@ public class TableSchema implements SchemaInterface {
     this.numPages = 0;
     this.numIndexPages = 0;
     this.pageOrder = new ArrayList<Integer>();
+    this.freePages = new ArrayList<Integer>();
     this.numRecords = 0;
     this.attributes = new ArrayList<AttributeSchema>();
     this.indexRootNumber = -1; // initialize to -1 in the case that there is no current B+ tree
@@ -49,6 +58,24 @@ public class TableSchema implements SchemaInterface {
     return tableNumber;
   }
 
+  /**
+   * The primary key index of a table is numbered after the table
+   */
+  @Override
+  public int getIndexNumber() {
+    return tableNumber;
+  }
+
+  @Override
+  public String getIndexFileName() {
+    return Integer.toString(tableNumber);
+  }
+
+  @Override
+  public NodeKeys createKeys() {
+    return NodeKeys.forType(this.attributes.get(this.getPrimaryIndex()).getType());
+  }
+
   public String getTableName() {
     return tableName;
   }
@@ -64,6 +91,7 @@ public class TableSchema implements SchemaInterface {
 
   public void setAttributes(List<AttributeSchema> attributes) {
     this.attributes = attributes;
+    this.recordComparator = null;
   }
 
   public boolean hasAttribute(String name) {
@@ -139,34 +167,39 @@ public class TableSchema implements SchemaInterface {
   }
 
   /**
-   * Decrements all pageNumbers that are greater than the input
-   * @param pageNum   The pageNum that was deleted
+   * Gets a page number for a new page, a page number freed by a deleted page
+   * if there is one, otherwise the slot after the last one in the table file.
+   * The caller adds the page to the page order.
+   *
+   * @return The page number of the new page
    */
-  public void decrementPageOrder(int pageNum) {
-    for (int i = 0; i < this.pageOrder.size(); i++) {
-      if (this.pageOrder.get(i) > pageNum) {
-        this.pageOrder.set(i, this.pageOrder.get(i)-1);
-      }
+  public int allocatePageNumber() {
+    if (!this.freePages.isEmpty()) {
+      return this.freePages.remove(this.freePages.size() - 1);
     }
+    return this.getNumPageSlots() + 1;
   }
 
   /**
-  * deletes a page from the tableSchema
-  * then decrement all pageNumber that appear after
-  * the deleted page
+  * deletes a page from the tableSchema, its page number
+  * is kept on the free list and the other pages keep theirs
   */
-  public void deletePageNumber(Integer pageNumber) {
+  public void freePageNumber(Integer pageNumber) {
     this.pageOrder.remove(pageNumber);
-    for (int i = 0; i < this.pageOrder.size(); i++) {
-      int pNum = this.pageOrder.get(i);
-      if (pNum > pageNumber) {
-        this.pageOrder.remove(i);
-        this.pageOrder.add(i, pNum - 1);
-      }
-    }
+    this.freePages.add(pageNumber);
     this.setNumPages();
   }
 
+  /**
+   * Every page number up to the last slot of the table file
+   * belongs either to a page or to the free list
+   *
+   * @return the number of page slots in the table file
+   */
+  public int getNumPageSlots() {
+    return this.pageOrder.size() + this.freePages.size();
+  }
+
   public int getRecords() {
     return numRecords;
   }
@@ -223,19 +256,26 @@ public class TableSchema implements SchemaInterface {
     return dataSize;
   }
 
+  /**
+   * @return the size of a primary key on hardware, strings with their length prefix
+   */
+  private int computeKeySize() throws Exception {
+    AttributeSchema primaryKey = this.attributes.get(this.getPrimaryIndex());
+    int size = getSizeofDataType(primaryKey.getDataType());
+    if (primaryKey.getType() == Type.STRING) {
+      size += Short.BYTES;
+    }
+    return size;
+  }
+
   public int computeN(Catalog catalog) throws Exception {
     int pageSize = catalog.getPageSize();
-    int dataSize = 0;
-    String dataType = this.attributes.get(this.getPrimaryIndex()).getDataType();
-
-    dataSize = getSizeofDataType(dataType);
-    return Math.floorDiv(pageSize, dataSize+8) - 1;
+    return Math.floorDiv(pageSize, computeKeySize() + 8) - 1;
   }
 
   public int computeSizeOfNode(Catalog catalog) throws Exception {
     int N = computeN(catalog);
-    String dataType = this.attributes.get(this.getPrimaryIndex()).getDataType();
-    int size = 1 + (Integer.BYTES * 5) + ((N-1) * getSizeofDataType(dataType)) + (N * (Integer.BYTES * 2));
+    int size = 1 + (Integer.BYTES * 5) + ((N-1) * computeKeySize()) + (N * (Integer.BYTES * 2));
     return size;
   }
 
@@ -286,6 +326,12 @@ public class TableSchema implements SchemaInterface {
         catalogAccessFile.writeInt(this.pageOrder.get(i));
     }
 
+    // Write the free page numbers to the catalog file
+    catalogAccessFile.writeInt(this.freePages.size());
+    for (int pageNumber : this.freePages) {
+        catalogAccessFile.writeInt(pageNumber);
+    }
+
     // Write the number of records to the catalog file
     catalogAccessFile.writeInt(this.numRecords);
 
@@ -300,6 +346,7 @@ public class TableSchema implements SchemaInterface {
 
   public void addAttribute(AttributeSchema attributeSchema) {
     this.attributes.add(attributeSchema);
+    this.recordComparator = null;
   }
 
   /**
@@ -323,6 +370,12 @@ public class TableSchema implements SchemaInterface {
         this.pageOrder.add(catalogAccessFile.readInt());
     }
 
+    // Read the free page numbers from the catalog file
+    int numFreePages = catalogAccessFile.readInt();
+    for (int i = 0; i < numFreePages; i++) {
+        this.freePages.add(catalogAccessFile.readInt());
+    }
+
     // Read the number of records from the catalog file
     this.numRecords = catalogAccessFile.readInt();
 
@@ -353,4 +406,34 @@ public class TableSchema implements SchemaInterface {
       return primaryIndex;
     }
 
+  /**
+   * Gets the order records of this table are kept in within and across pages,
+   * ascending by primary key. The comparator reads the keys with the typed
+   * getters of Record and is made once per table rather than once per insert.
+   *
+   * @return A comparator of records by primary key
+   */
+  public Comparator<Record> getRecordComparator() {
+    if (this.recordComparator == null) {
+      int primaryIndex = this.getPrimaryIndex();
+      switch (this.attributes.get(primaryIndex).getType()) {
+        case INTEGER:
+          this.recordComparator = (a, b) -> Integer.compare(a.getInt(primaryIndex), b.getInt(primaryIndex));
+          break;
+        case DOUBLE:
+          this.recordComparator = (a, b) -> Double.compare(a.getDouble(primaryIndex), b.getDouble(primaryIndex));
+          break;
+        case BOOLEAN:
+          this.recordComparator = (a, b) -> Boolean.compare(a.getBoolean(primaryIndex), b.getBoolean(primaryIndex));
+          break;
+        case STRING:
+          this.recordComparator = (a, b) -> a.getString(primaryIndex).compareTo(b.getString(primaryIndex));
+          break;
+        default:
+          throw new IllegalArgumentException("Unsupported data type: " + this.attributes.get(primaryIndex).getDataType());
+      }
+    }
+    return this.recordComparator;
+  }
+
 }
@@ -16,6 +16,8 @@ import QueryExecutor.DeleteQueryExecutor;
 import QueryExecutor.InsertQueryExcutor;
 import QueryExecutor.SelectQueryExecutor;
 import QueryExecutor.UpdateQueryExecutor;
+import StorageManager.SecondaryIndex;
+import StorageManager.StorageManager;
 import StorageManager.TableSchema;
 import StorageManager.Objects.AttributeSchema;
 import StorageManager.Objects.Catalog;
@@ -76,6 +78,17 @@ public class UserInterface {
                 String tableName = DDLParser.parseDropTable(tokens);
                 DDLQueryExecutor ddlQueryExecutor = new DDLQueryExecutor(tableName, "drop");
                 ddlQueryExecutor.excuteQuery();
+            } else if (tokens.get(0).getVal().equalsIgnoreCase("create") &&
+                    tokens.get(1).getVal().equalsIgnoreCase("index")) {
+                HashMap<String, String> indexInfo = DDLParser.parseCreateIndex(tokens);
+                DDLQueryExecutor ddlQueryExecutor = new DDLQueryExecutor(indexInfo.get("indexName"), "createIndex",
+                        indexInfo.get("tableName"), indexInfo.get("attributeName"));
+                ddlQueryExecutor.excuteQuery();
+            } else if (tokens.get(0).getVal().equalsIgnoreCase("drop") &&
+                    tokens.get(1).getVal().equalsIgnoreCase("index")) {
+                String indexName = DDLParser.parseDropIndex(tokens);
+                DDLQueryExecutor ddlQueryExecutor = new DDLQueryExecutor(indexName, "dropIndex");
+                ddlQueryExecutor.excuteQuery();
             } else if (tokens.get(0).getVal().equalsIgnoreCase("alter") &&
                     tokens.get(1).getVal().equalsIgnoreCase("table")) {
                 HashMap<String, String> tableAlterInfo = DDLParser.parseAlterTable(tokens);
@@ -132,6 +145,9 @@ public class UserInterface {
                                     (attributeSchema.isUnique() ? " unique" : ""))));
 
         }
+        for (SecondaryIndex index : catalog.getIndexes(tableSchema.getTableNumber())) {
+            System.out.println("\t" + (index.isUnique() ? "unique index " : "index ") + index.getIndexName() + " on " + index.getAttributeName());
+        }
         System.out.println("Pages: " + tableSchema.getNumPages() + "\n" +
                 "Records: " + tableSchema.getRecords());
         MessagePrinter.printMessage(MessageType.SUCCESS, null);
@@ -139,10 +155,16 @@ public class UserInterface {
 
     private void displaySchemaResult() throws Exception {
         Catalog catalog = Catalog.getCatalog();
+        StorageManager storageManager = StorageManager.getStorageManager();
+        long hits = storageManager.getBufferHits();
+        long accesses = hits + storageManager.getBufferMisses();
+        double hitRate = accesses == 0 ? 0 : 100.0 * hits / accesses;
 
         System.out.println("DB Location: " + catalog.getDbLocation() + "\n" +
                 "Page Size: " + catalog.getPageSize() + "\n" +
-                "Buffer Size: " + catalog.getBufferSize() + "\n");
+                "Buffer Size: " + catalog.getBufferSize() + "\n" +
+                "Buffer Policy: " + storageManager.getBufferPolicyName() + "\n" +
+                String.format("Buffer Hit Rate: %.2f%% (%d of %d page requests)", hitRate, hits, accesses) + "\n");
 
         Map<Integer, TableSchema> tables = catalog.getSchemas();
         if (tables.isEmpty()) {